@@ -1,28 +1,108 @@
 import java.awt.*;
 import javax.swing.*;
-import java.util.ArrayList;
-import java.util.List;
-import java.awt.geom.Path2D;
-import java.awt.geom.Point2D;
-import java.awt.geom.Ellipse2D;
+import java.util.Arrays;
+import java.awt.geom.Rectangle2D;
 import java.awt.image.BufferedImage;
 import java.awt.geom.AffineTransform;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+import java.util.random.RandomGenerator;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
 
 public class AnimationPanel extends JPanel implements Runnable {
-    private static final int CANVAS_WIDTH = 600;
-    private static final int CANVAS_HEIGHT = 600;
-    private static final int FRAME_DELAY = 100;
+    private static final int DEFAULT_WIDTH = 600; // Preferred size, until the layout decides
+    private static final int DEFAULT_HEIGHT = 600;
+    private static final int FRAME_DELAY = 100; // Length of one simulation tick in ms
+    private static final int DEFAULT_FPS = 60;
+    private static final int MAX_CATCH_UP_TICKS = 5; // Ticks run per frame before skipping
     private static final int MAX_AGE = 100;
-
+    private static final int STAR_COUNT = 100; // Per default-sized canvas; larger ones get more
+    private static final int EXPLOSION_BATCHES = 5; // Ticks over which the particles are spawned
+    private static final float EXPLOSION_SPEED = 3.0f; // Fastest particle, in pixels per tick
+    private static final int EXPLOSION_PARTICLE_SIZE = 20; // Largest particle of a default burst
+    private static final int DEFAULT_EXPLOSION_PARTICLES = 2000;
+    private static final int EXPLOSION_PARTICLES =
+            Integer.getInteger("animation.particles", DEFAULT_EXPLOSION_PARTICLES);
+
+    // Moving layers composited over the cached background
+    private static final int LAYER_SUN = 0;
+    private static final int LAYER_EARTH = 1;
+    private static final int LAYER_EXPLOSION = 2;
+    private static final int LAYER_BODIES = 3;
+    private static final int LAYER_COUNT = 4;
+    private static final int RECORDER_QUEUE_FRAMES = 30; // Frames buffered for a slow disk
+    private static final int METRICS_OVERLAY_LINES = 4;
+    private static final String METRICS_NAME = "FromBabiesTo:type=FrameMetrics"; // JMX name
+    private static final long METRICS_OVERLAY_REFRESH = TimeUnit.MILLISECONDS.toNanos(500);
+    private static final int DEFAULT_PRESENTER_BUFFERS = 2;
+
+    // Colors, gradients and composites of the draw methods, created once instead of per frame
+    private static final SpanRasterizer.SpanPaint SUN_FLARE =
+            SpanRasterizer.solid(new Color(255, 255, 255, 16)); // White at 32, drawn at half alpha
+
+    private final RandomGenerator random; // Every random decision of the scene comes from here
+    private final SceneAssets assets; // Caches shared with other panels of the same world
+    private final Scene scene; // What is drawn, loaded from a scene file
+    private final boolean ownsFrames; // False when rendering only into frames lent to it
     private Thread animator;
-    private boolean running = false;
-    private BufferedImage buffer;
+    private volatile boolean running = false;
+    private int targetFps = Integer.getInteger("animation.fps", DEFAULT_FPS);
+    private volatile FrameBuffers frameBuffers; // Hands finished frames to the presenter
+    private TileRenderer tileRenderer; // Only set when the canvas is large enough to tile
+    private final FrameMetrics metrics = new FrameMetrics();
+    private ObjectName metricsName; // Set while the metrics are registered with JMX
+    private volatile boolean metricsOverlayVisible = Boolean.getBoolean("animation.metrics");
+    private final Rectangle metricsOverlayBounds = new Rectangle(8, 8, 250, 84);
+    private final String[] metricsOverlayLines = new String[METRICS_OVERLAY_LINES];
+    private long metricsOverlayRefresh; // When the overlay text is next rebuilt, by the presenter
+    private Font metricsFont; // Derived once by the presenter
+    private final Consumer<Graphics2D> metricsOverlay = this::drawMetricsOverlay;
+    private volatile Y4mRecorder recorder; // Gets a copy of every rendered frame when set
+    private Path recordFile; // Recorded into from the first frame, sized like it
+    private boolean recordSizeWarned; // Whether frames of another size were reported yet
+    private CanvasPresenter canvasPresenter; // Only set when the animator presents actively
+
+    // Canvas size in logical pixels, and how many buffer pixels make up one of them (HiDPI)
+    private int canvasWidth = DEFAULT_WIDTH;
+    private int canvasHeight = DEFAULT_HEIGHT;
+    private double renderScale = 1.0;
+    private GraphicsConfiguration scaleConfiguration; // The screen renderScale was read from
+    private final AffineTransform canvasTransform = new AffineTransform();
+    private final AffineTransform deviceTransform = new AffineTransform();
+    private final Rectangle layerBounds = new Rectangle();
+    private final Rectangle repaintArea = new Rectangle();
+
+    // Scratch space of the draw methods, which run on the rendering thread only
+    private BufferedImage cloudLayer; // Scratch layer the clouds are cut to the Earth's disc in
+    private SpanRasterizer cloudRaster;
+    private int[] cloudPixels;
+
+    // The back frame currently being rendered, only touched by the rendering thread
+    private BufferedImage bufferImage;
     private Graphics2D bufferGraphics;
+    private SpanRasterizer bufferRaster; // Writes straight into the buffer's pixels
+    private LayerCompositor compositor;
+    private BufferedImage backgroundLayer; // Space gradient and stars, rendered once
+    private final Rectangle frameDamage = new Rectangle(); // Area changed by the last frame
     private int characterAge = 0;
     private Point characterPosition; // Character position
     private Point characterVelocity; // Movement speed
-    private List<Point> clouds; // List of cloud positions
+    private final Point previousPosition = new Point(); // Position at the previous tick
+    private CloudSystem clouds; // Drift over the Earth from tick to tick
+    private Starfield starfield;
+    private BodySystem bodies; // Only set in many-body mode
     private double earthRotationAngle = 0; // Earth rotation angle
+    private double previousRotationAngle = 0;
+    private final EarthSpriteCache earthSprites;
+    private final GlobeRenderer globe; // Draws the Earth's surface, unless it is flat
 
     // Earth
     boolean isExploding = false;
@@ -30,33 +110,255 @@ public class AnimationPanel extends JPanel implements Runnable {
 
     // Sun
     private double sunPulseAngle = 0; // Sun pulsation angle
+    private double previousSunPulseAngle = 0;
+    private final SpanRasterizer.RadialGradient sunGradient;
+
+    // Explosion
+    private ParticleSystem explosionParticles;
+    private final Rectangle explosionArea = new Rectangle();
+    private final TileRenderer.TilePass explosionPass = this::paintExplosionParticles;
+
+    // State interpolated between the last two ticks, read by the draw methods
+    private int renderX;
+    private int renderY;
+    private double renderRotationAngle;
+    private double renderSunPulseAngle;
+    private float renderAlpha = 1.0f;
 
     public AnimationPanel() {
+        this(true);
+    }
+
+    /**
+     * Creates the panel, optionally without starting the animator thread. A panel created with
+     * {@code animate == false} is driven manually through {@link #renderNextFrame()}, which makes
+     * it usable without a window (e.g. with {@code java.awt.headless=true}).
+     *
+     * @param animate true to start the animator thread, false to render frames on demand.
+     */
+    public AnimationPanel(boolean animate) {
+        this(animate, new SplittableRandom());
+    }
+
+    /**
+     * Creates the panel with the given random source. Two panels created with equally seeded
+     * sources render identical frame sequences when driven through {@link #renderNextFrame()}.
+     *
+     * @param animate true to start the animator thread, false to render frames on demand.
+     * @param random the source of every random decision in the scene.
+     */
+    public AnimationPanel(boolean animate, RandomGenerator random) {
+        this(animate, random, Scene.loadDefault());
+    }
+
+    /**
+     * Creates the panel with the given random source, drawing the given scene.
+     *
+     * @param animate true to start the animator thread, false to render frames on demand.
+     * @param random the source of every random decision in the scene.
+     * @param scene the sun, Earth and colors to draw.
+     */
+    public AnimationPanel(boolean animate, RandomGenerator random, Scene scene) {
+        this(animate, random, SceneAssets.create(scene, random), true);
+    }
+
+    /**
+     * Creates one of many panels rendering at once, e.g. one per viewer of a server. It shares
+     * the given assets with the other panels and has no frame buffers of its own: it only renders
+     * through {@link #renderNextFrame(FrameBuffers.Frame)}, into frames lent to it. It never
+     * starts an animator thread.
+     *
+     * @param random the source of every random decision in the panel's own simulation.
+     * @param assets the scene and caches shared with the other panels.
+     */
+    public AnimationPanel(RandomGenerator random, SceneAssets assets) {
+        this(false, random, assets, false);
+    }
+
+    private AnimationPanel(boolean animate, RandomGenerator random, SceneAssets assets,
+            boolean ownsFrames) {
+        this.random = random;
+        this.assets = assets;
+        this.scene = assets.getScene();
+        this.ownsFrames = ownsFrames;
+        Scene.Gradient sunlight = scene.getSunGradient();
+        this.sunGradient = new SpanRasterizer.RadialGradient(sunlight.fractions, sunlight.colors);
+        this.earthSprites = assets.getEarthSprites();
+        this.globe = assets.getGlobe();
         initializeCanvas();
         initializeClouds();
-        startAnimation();
+        initializeExplosion();
+        initializeBodies();
+        resizeCanvas(DEFAULT_WIDTH, DEFAULT_HEIGHT, 1.0);
+        if (animate) {
+            initializePresenter();
+            startRecording();
+            startAnimation();
+        } else {
+            setSize(DEFAULT_WIDTH, DEFAULT_HEIGHT); // No layout manager will size us
+        }
     }
 
     private void initializeCanvas() {
-        setPreferredSize(new Dimension(CANVAS_WIDTH, CANVAS_HEIGHT));
-        buffer = new BufferedImage(CANVAS_WIDTH, CANVAS_HEIGHT, BufferedImage.TYPE_INT_ARGB);
-        bufferGraphics = buffer.createGraphics();
-        bufferGraphics.setRenderingHint(RenderingHints.KEY_ANTIALIASING,
-                RenderingHints.VALUE_ANTIALIAS_ON);
+        setPreferredSize(new Dimension(DEFAULT_WIDTH, DEFAULT_HEIGHT));
 
-        characterPosition = new Point(CANVAS_WIDTH / 2, CANVAS_HEIGHT / 2); // Start in the center
+        characterPosition = new Point(canvasWidth / 2, canvasHeight / 2); // Start in the center
         characterVelocity = new Point(characterSpeed, characterSpeed); // Initial velocity
+        previousPosition.setLocation(characterPosition);
+        renderX = characterPosition.x;
+        renderY = characterPosition.y;
     }
 
     private void initializeClouds() {
-        clouds = new ArrayList<>();
-        for (int i = 0; i < 5; i++) {
-            clouds.add(new Point((int) (Math.random() * CANVAS_WIDTH),
-                    (int) (Math.random() * CANVAS_HEIGHT)));
+        // A panel among many shares the cloud shapes and masks, and only places its clouds. A
+        // panel of its own draws shapes from its random source too, as it always has
+        if (ownsFrames) {
+            clouds = new CloudSystem(SceneAssets.CLOUD_COUNT, SceneAssets.CACHE_CAPACITY, random);
+        } else {
+            clouds = new CloudSystem(assets.getCloudShapes(), random);
+        }
+    }
+
+    /**
+     * Follows the panel's size and the scale of the screen it is on, reallocating the buffers
+     * only when either changed. Called by the rendering thread before every frame.
+     */
+    private void updateCanvasSize() {
+        GraphicsConfiguration configuration = getGraphicsConfiguration();
+        double scale = renderScale;
+        if (configuration != scaleConfiguration) {
+            scaleConfiguration = configuration; // Only a new screen can change the scale
+            scale = configuration != null ? configuration.getDefaultTransform().getScaleX() : 1.0;
         }
+
+        int width = getWidth();
+        int height = getHeight();
+        if (width <= 0 || height <= 0) {
+            return; // Not laid out yet
+        }
+        if (width != canvasWidth || height != canvasHeight || scale != renderScale) {
+            resizeCanvas(width, height, scale);
+        }
+    }
+
+    /**
+     * Rebuilds everything that depends on the canvas size: the stars, the background and the
+     * frame buffers. Sprites are cached by their size in pixels and rebuild themselves as they
+     * are needed. Backgrounds are shared through the assets, so a size another panel of the same
+     * world has rendered is not rendered again. New frame buffers replace the old ones with the
+     * current scene already rendered into them.
+     */
+    private void resizeCanvas(int width, int height, double scale) {
+        canvasWidth = width;
+        canvasHeight = height;
+        renderScale = scale;
+        canvasTransform.setToScale(scale, scale);
+
+        int bufferWidth = (int) Math.ceil(width * scale);
+        int bufferHeight = (int) Math.ceil(height * scale);
+        boolean tiled = Boolean.getBoolean("animation.tiled")
+                || TileRenderer.isWorthTiling(bufferWidth, bufferHeight);
+        tileRenderer = tiled ? new TileRenderer() : null;
+
+        int starCount = (int) ((long) STAR_COUNT * width * height
+                / (DEFAULT_WIDTH * DEFAULT_HEIGHT));
+        starfield = new Starfield(width, height, starCount,
+                new SplittableRandom(assets.getStarSeed()));
+        backgroundLayer = assets.getBackground(bufferWidth, bufferHeight, scale,
+                () -> renderBackground(bufferWidth, bufferHeight));
+
+        if (bodies != null) {
+            bodies.setArea(width, height);
+        }
+
+        if (ownsFrames) {
+            FrameBuffers oldBuffers = frameBuffers;
+            FrameBuffers newBuffers = new FrameBuffers(backgroundLayer, LAYER_COUNT, scale);
+            bindFrame(newBuffers.getBackFrame());
+            if (oldBuffers != null) {
+                // Swap in the new frames only once one holds the scene, or the presenter would
+                // show an empty frame for a moment
+                compositor.beginFrame();
+                drawScene();
+                newBuffers.publish();
+                bindFrame(newBuffers.getBackFrame());
+            }
+            frameBuffers = newBuffers;
+            if (oldBuffers != null) {
+                oldBuffers.dispose();
+            }
+        }
+    }
+
+    private BufferedImage renderBackground(int bufferWidth, int bufferHeight) {
+        BufferedImage background =
+                new BufferedImage(bufferWidth, bufferHeight, BufferedImage.TYPE_INT_ARGB);
+        if (tileRenderer != null) {
+            tileRenderer.render(background, this::drawBackgroundTile);
+        } else {
+            Graphics2D g2d = background.createGraphics();
+            g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING,
+                    RenderingHints.VALUE_ANTIALIAS_ON);
+            g2d.transform(canvasTransform);
+            drawBackground(g2d);
+            g2d.dispose();
+        }
+        return background;
+    }
+
+    private void initializeExplosion() {
+        // Larger bursts get smaller particles, so they cover about the same number of pixels
+        double scale = Math.sqrt(DEFAULT_EXPLOSION_PARTICLES
+                / (double) Math.max(EXPLOSION_PARTICLES, DEFAULT_EXPLOSION_PARTICLES));
+        int particleSize = (int) Math.max(Math.round(EXPLOSION_PARTICLE_SIZE * scale), 2);
+        explosionParticles = new ParticleSystem(EXPLOSION_PARTICLES, particleSize, random);
+    }
+
+    /**
+     * Switches to many-body mode when the {@code animation.bodies} system property asks for it:
+     * the sun stays, and the single Earth is replaced by that many independent ones.
+     */
+    private void initializeBodies() {
+        int bodyCount = Integer.getInteger("animation.bodies", 0);
+        if (bodyCount > 0) {
+            bodies = new BodySystem(bodyCount, MAX_AGE, scene, canvasWidth, canvasHeight,
+                    random);
+        }
+    }
+
+    /**
+     * Switches to active rendering when the {@code animation.presenter} system property is
+     * {@code canvas}: a {@link CanvasPresenter} covers the panel, and the animator draws every
+     * frame onto it itself instead of asking Swing to repaint. The number of buffers can be set
+     * with the {@code animation.buffers} system property. Without a screen, the panel stays with
+     * Swing painting.
+     */
+    private void initializePresenter() {
+        if (!"canvas".equals(System.getProperty("animation.presenter"))
+                || GraphicsEnvironment.isHeadless()) {
+            return;
+        }
+
+        canvasPresenter = new CanvasPresenter(
+                Integer.getInteger("animation.buffers", DEFAULT_PRESENTER_BUFFERS));
+        setLayout(new BorderLayout());
+        add(canvasPresenter, BorderLayout.CENTER);
+    }
+
+    private void bindBackFrame() {
+        bindFrame(frameBuffers.getBackFrame());
+    }
+
+    private void bindFrame(FrameBuffers.Frame frame) {
+        bufferImage = frame.image;
+        bufferGraphics = frame.graphics;
+        bufferGraphics.setTransform(canvasTransform); // The scene is drawn in logical pixels
+        bufferRaster = frame.raster;
+        compositor = frame.compositor;
     }
 
     private void startAnimation() {
+        registerMetrics();
         running = true;
         animator = new Thread(this);
         animator.start();
@@ -69,123 +371,518 @@ public class AnimationPanel extends JPanel implements Runnable {
         } catch (InterruptedException e) {
             Thread.currentThread().interrupt();
         }
+        unregisterMetrics();
+    }
+
+    /**
+     * Returns the timings and counters of the frames this panel renders. While the panel is
+     * animating they are also published over JMX as {@code FromBabiesTo:type=FrameMetrics}, or,
+     * if another panel is animating in the same JVM, under the same name with a
+     * {@code name=panel<hash>} key added.
+     */
+    public FrameMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Shows or hides the metrics overlay in the top-left corner. It can also be shown from the
+     * start with the {@code animation.metrics} system property.
+     */
+    public void setMetricsOverlayVisible(boolean visible) {
+        metricsOverlayVisible = visible;
+        repaint(metricsOverlayBounds);
+    }
+
+    public boolean isMetricsOverlayVisible() {
+        return metricsOverlayVisible;
+    }
+
+    /**
+     * Records the animation into the Y4M file named by the {@code animation.record} system
+     * property, if set. The file is opened by the first rendered frame, at that frame's size in
+     * buffer pixels, which on a HiDPI screen is larger than the panel. Frames the disk cannot
+     * keep up with are dropped rather than slowing the animation down. The file is closed when
+     * the JVM exits.
+     */
+    private void startRecording() {
+        String file = System.getProperty("animation.record");
+        if (file == null) {
+            return;
+        }
+
+        recordFile = Paths.get(file);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            stopAnimation();
+            Y4mRecorder fileRecorder = recorder;
+            if (fileRecorder == null) {
+                return;
+            }
+            try {
+                fileRecorder.close();
+                if (fileRecorder.getFramesDropped() > 0) {
+                    System.err.printf("Recorded %d frames, dropped %d%n",
+                            fileRecorder.getFramesWritten(), fileRecorder.getFramesDropped());
+                }
+            } catch (IOException e) {
+                System.err.println("Could not finish recording: " + e.getMessage());
+            }
+        }));
+    }
+
+    /**
+     * Hands the frame just rendered to the recorder, opening the recording file first if it is
+     * still to be opened. A Y4M stream cannot change size, so frames of another size than the
+     * recording, after a resize or a move to a screen of another scale, are counted as dropped.
+     */
+    private void recordVideoFrame() {
+        if (recordFile != null) {
+            Path file = recordFile;
+            recordFile = null;
+            try {
+                recorder = new Y4mRecorder(file, bufferImage.getWidth(), bufferImage.getHeight(),
+                        targetFps, RECORDER_QUEUE_FRAMES, Y4mRecorder.OverflowPolicy.DROP);
+            } catch (IOException e) {
+                System.err.println("Could not start recording: " + e.getMessage());
+            }
+        }
+
+        Y4mRecorder frameRecorder = recorder;
+        if (frameRecorder == null) {
+            return;
+        }
+        if (frameRecorder.getWidth() == bufferImage.getWidth()
+                && frameRecorder.getHeight() == bufferImage.getHeight()) {
+            frameRecorder.submit(bufferRaster.getPixels());
+        } else {
+            frameRecorder.drop();
+            if (!recordSizeWarned) {
+                recordSizeWarned = true;
+                System.err.printf("Recording is %dx%d but frames are now %dx%d; dropping frames"
+                        + " of other sizes%n", frameRecorder.getWidth(),
+                        frameRecorder.getHeight(), bufferImage.getWidth(), bufferImage.getHeight());
+            }
+        }
+    }
+
+    private void registerMetrics() {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            metricsName = new ObjectName(METRICS_NAME);
+            if (server.isRegistered(metricsName)) {
+                // Another panel is animating already, so this one gets a name of its own
+                metricsName = new ObjectName(METRICS_NAME + ",name=panel"
+                        + Integer.toHexString(System.identityHashCode(this)));
+            }
+            server.registerMBean(metrics, metricsName);
+        } catch (JMException e) {
+            metricsName = null;
+            System.err.println("Could not register frame metrics: " + e.getMessage());
+        }
+    }
+
+    private void unregisterMetrics() {
+        if (metricsName == null) {
+            return;
+        }
+
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(metricsName);
+        } catch (JMException e) {
+            System.err.println("Could not unregister frame metrics: " + e.getMessage());
+        }
+        metricsName = null;
+    }
+
+    /**
+     * Sets how many frames per second the animator renders. The simulation always advances in
+     * fixed ticks of {@code FRAME_DELAY} ms; frames in between are interpolated. The default can
+     * also be set with the {@code animation.fps} system property.
+     *
+     * @param fps the target frame rate. Must be positive.
+     */
+    public void setTargetFps(int fps) {
+        if (fps <= 0) {
+            throw new IllegalArgumentException("Frame rate must be positive.");
+        }
+        targetFps = fps;
+    }
+
+    public int getTargetFps() {
+        return targetFps;
+    }
+
+    /**
+     * Returns how many simulation ticks make up one second of animation. Frames rendered through
+     * {@link #renderNextFrame()} are this many per second of animation.
+     */
+    public int getTickRate() {
+        return 1000 / FRAME_DELAY;
+    }
+
+    /**
+     * Hands a copy of every frame rendered from now on to the given recorder, or stops doing so
+     * when it is null. The recorder is not closed by the panel.
+     */
+    public void setRecorder(Y4mRecorder recorder) {
+        this.recorder = recorder;
     }
 
     @Override
     public void run() {
+        long tickNanos = TimeUnit.MILLISECONDS.toNanos(FRAME_DELAY);
+        long previousTime = System.nanoTime();
+        long nextFrameTime = previousTime;
+        long lag = 0;
+
         while (running) {
-            updateCharacter();
-            repaint();
+            long now = System.nanoTime();
+            long allocatedBefore = FrameMetrics.currentThreadAllocatedBytes();
+            lag += now - previousTime;
+            previousTime = now;
+
+            // Run the ticks that are due, but skip a backlog we cannot recover from
+            for (int ticks = 0; lag >= tickNanos && ticks < MAX_CATCH_UP_TICKS; ticks++) {
+                timedUpdate();
+                lag -= tickNanos;
+            }
+            if (lag >= tickNanos) {
+                metrics.recordSkippedTicks(lag / tickNanos);
+                lag %= tickNanos;
+            }
 
-            try {
-                Thread.sleep(FRAME_DELAY);
-            } catch (InterruptedException e) {
-                Thread.currentThread().interrupt();
+            timedRender((double) lag / tickNanos);
+            recordFrame(now, allocatedBefore);
+            if (canvasPresenter != null) {
+                presentFrame();
+            } else {
+                repaint(repaintArea); // Only the area that changed
+                if (metricsOverlayVisible) {
+                    repaint(metricsOverlayBounds);
+                }
+            }
+
+            long frameNanos = TimeUnit.SECONDS.toNanos(1) / targetFps;
+            nextFrameTime += frameNanos;
+            long late = System.nanoTime() - nextFrameTime;
+            if (late > 0) {
+                // This frame missed its deadline, and so did every whole period after it
+                metrics.recordDroppedFrames(1 + late / frameNanos);
+                nextFrameTime = System.nanoTime(); // Late: drop the frame rather than rush
             }
+            waitUntil(nextFrameTime);
+        }
+    }
+
+    /**
+     * Draws the frame just rendered onto the canvas presenter, from the animator thread.
+     */
+    private void presentFrame() {
+        long start = System.nanoTime();
+        if (canvasPresenter.present(frameBuffers, frameDamage,
+                metricsOverlayVisible ? metricsOverlay : null)) {
+            metrics.recordStage(FrameMetrics.Stage.PAINT, System.nanoTime() - start);
         }
     }
 
-    private void clearBuffer() {
-        bufferGraphics.setComposite(AlphaComposite.Clear);
-        bufferGraphics.fillRect(0, 0, buffer.getWidth(), buffer.getHeight());
-        bufferGraphics.setComposite(AlphaComposite.SrcOver);
+    private void waitUntil(long deadline) {
+        long remaining;
+        while (running && (remaining = deadline - System.nanoTime()) > 0) {
+            LockSupport.parkNanos(remaining);
+        }
+    }
+
+    /**
+     * Advances the animation by one tick and renders it into an off-screen buffer, without
+     * sleeping or repainting. The returned image stays untouched until the next call.
+     *
+     * @return the off-screen buffer holding the rendered frame.
+     */
+    public BufferedImage renderNextFrame() {
+        if (!ownsFrames) {
+            throw new IllegalStateException("This panel only renders into lent frames.");
+        }
+        long start = System.nanoTime();
+        long allocatedBefore = FrameMetrics.currentThreadAllocatedBytes();
+        timedUpdate();
+        timedRender(1.0);
+        recordFrame(start, allocatedBefore);
+        return frameBuffers.acquireFrontFrame().image;
+    }
+
+    /**
+     * Advances the animation by one tick and renders all of it into the given frame, whatever
+     * the frame held before. Frames may be lent to one panel after another, as long as they come
+     * from {@link #createFrame()} of a panel of the same size sharing the same assets.
+     */
+    public void renderNextFrame(FrameBuffers.Frame frame) {
+        if (frame.image.getWidth() != backgroundLayer.getWidth()
+                || frame.image.getHeight() != backgroundLayer.getHeight()) {
+            throw new IllegalArgumentException("Frame must match the canvas size.");
+        }
+
+        long start = System.nanoTime();
+        long allocatedBefore = FrameMetrics.currentThreadAllocatedBytes();
+        timedUpdate();
+        long renderStart = System.nanoTime();
+        interpolate(1.0);
+        bindFrame(frame);
+        compositor.invalidateAll(); // Its layers were last drawn by another panel, if any
+        compositor.beginFrame();
+        drawScene();
+        compositor.endFrame();
+        metrics.recordStage(FrameMetrics.Stage.RENDER, System.nanoTime() - renderStart);
+        recordFrame(start, allocatedBefore);
+    }
+
+    /**
+     * Creates a frame the size of the canvas for {@link #renderNextFrame(FrameBuffers.Frame)}.
+     */
+    public FrameBuffers.Frame createFrame() {
+        return FrameBuffers.createFrame(backgroundLayer, LAYER_COUNT);
+    }
+
+    /**
+     * Advances the animation by the given number of ticks without rendering them. Rendering does
+     * not change the scene, so the frames rendered afterwards are the same as if every skipped
+     * tick had been rendered too.
+     */
+    public void skipTicks(int ticks) {
+        for (int i = 0; i < ticks; i++) {
+            timedUpdate();
+        }
+    }
+
+    /**
+     * Returns how many ticks the Earth takes to grow up and explode, after which a new one
+     * starts.
+     */
+    public static int getCycleTicks() {
+        return 2 * MAX_AGE;
+    }
+
+    public int getCharacterAge() {
+        return characterAge;
+    }
+
+    public Scene getScene() {
+        return scene;
+    }
+
+    private void timedUpdate() {
+        long start = System.nanoTime();
+        updateCharacter();
+        metrics.recordStage(FrameMetrics.Stage.UPDATE, System.nanoTime() - start);
+    }
+
+    private void timedRender(double alpha) {
+        long start = System.nanoTime();
+        renderFrame(alpha);
+        metrics.recordStage(FrameMetrics.Stage.RENDER, System.nanoTime() - start);
+    }
+
+    private void recordFrame(long start, long allocatedBefore) {
+        long end = System.nanoTime();
+        long allocated = allocatedBefore < 0 ? -1
+                : FrameMetrics.currentThreadAllocatedBytes() - allocatedBefore;
+        metrics.recordFrame(start, end, allocated);
+    }
+
+    /**
+     * Renders the scene at {@code alpha} of the way from the previous tick to the current one.
+     */
+    private void renderFrame(double alpha) {
+        interpolate(alpha);
+        updateCanvasSize();
+        bindBackFrame();
+        compositor.beginFrame();
+        drawScene();
+
+        recordVideoFrame();
+        frameDamage.setBounds(frameBuffers.publish());
+
+        // The damage is in buffer pixels, repaints are in logical ones
+        int x1 = (int) Math.floor(frameDamage.x / renderScale);
+        int y1 = (int) Math.floor(frameDamage.y / renderScale);
+        int x2 = (int) Math.ceil((frameDamage.x + frameDamage.width) / renderScale);
+        int y2 = (int) Math.ceil((frameDamage.y + frameDamage.height) / renderScale);
+        repaintArea.setBounds(x1, y1, x2 - x1, y2 - y1);
+    }
+
+    /**
+     * Sets the state the draw methods read to {@code alpha} of the way from the previous tick to
+     * the current one.
+     */
+    private void interpolate(double alpha) {
+        renderX = (int) Math.round(
+                previousPosition.x + (characterPosition.x - previousPosition.x) * alpha);
+        renderY = (int) Math.round(
+                previousPosition.y + (characterPosition.y - previousPosition.y) * alpha);
+        renderRotationAngle =
+                previousRotationAngle + (earthRotationAngle - previousRotationAngle) * alpha;
+        renderSunPulseAngle =
+                previousSunPulseAngle + (sunPulseAngle - previousSunPulseAngle) * alpha;
+        renderAlpha = (float) alpha;
+    }
+
+    /**
+     * Sets the bounds of a compositor layer, given in logical pixels, and returns them in buffer
+     * pixels. The returned rectangle is reused by the next call.
+     */
+    private Rectangle setLayerBounds(int layer, int x, int y, int width, int height) {
+        int x1 = (int) Math.floor(x * renderScale);
+        int y1 = (int) Math.floor(y * renderScale);
+        int x2 = (int) Math.ceil((x + width) * renderScale);
+        int y2 = (int) Math.ceil((y + height) * renderScale);
+        layerBounds.setBounds(x1, y1, x2 - x1, y2 - y1);
+        compositor.setBounds(layer, x1, y1, x2 - x1, y2 - y1);
+        return layerBounds;
     }
 
     private void drawScene() {
-        drawBackground(bufferGraphics);
-        if (isExploding) {
-            drawExplosion(bufferGraphics, characterPosition.x, characterPosition.y);
+        if (bodies != null) {
+            drawSun(bufferGraphics);
+            drawBodies(bufferGraphics);
+        } else if (isExploding) {
+            drawExplosion(bufferGraphics);
         } else {
             drawCharacter(bufferGraphics);
         }
     }
 
     private void updateCharacter() {
+        previousSunPulseAngle = sunPulseAngle;
+        sunPulseAngle += 0.05; // Adjust the speed of the pulsation
+        if (bodies != null) {
+            bodies.update();
+            return; // Only the sun and the bodies are drawn, so the single Earth stands still
+        }
+
+        previousPosition.setLocation(characterPosition);
+        previousRotationAngle = earthRotationAngle;
+
         if (!isExploding) {
             characterAge++;
             if (characterAge >= MAX_AGE) {
                 isExploding = true;
                 characterAge = MAX_AGE;
+                explosionParticles.clear();
             }
         } else {
             characterAge--;
             if (characterAge <= 0) {
                 isExploding = false;
                 characterAge = 0;
-                characterPosition = new Point(CANVAS_WIDTH / 2, CANVAS_HEIGHT / 2);
+                characterPosition.setLocation(canvasWidth / 2, canvasHeight / 2);
+                previousPosition.setLocation(characterPosition); // Jump, don't slide back
             }
         }
 
         if (!isExploding) {
             updatePosition();
             earthRotationAngle += 0.5;
+            clouds.update();
+        } else {
+            updateExplosion();
         }
-
-        clearBuffer();
-        drawScene();
     }
 
     private void updatePosition() {
-        int size = 40 + (characterAge / 5);
+        int size = scene.getEarthRadius(characterAge);
         characterPosition.x += characterVelocity.x;
         characterPosition.y += characterVelocity.y;
 
         // Boundary checking
-        if (characterPosition.x - size / 2 < 0 || characterPosition.x + size / 2 > getWidth()) {
+        if (characterPosition.x - size / 2 < 0 || characterPosition.x + size / 2 > canvasWidth) {
             characterVelocity.x *= -1;
             characterPosition.x =
-                    Math.max(size / 2, Math.min(characterPosition.x, getWidth() - size / 2));
+                    Math.max(size / 2, Math.min(characterPosition.x, canvasWidth - size / 2));
         }
-        if (characterPosition.y - size / 2 < 0 || characterPosition.y + size / 2 > getHeight()) {
+        if (characterPosition.y - size / 2 < 0
+                || characterPosition.y + size / 2 > canvasHeight) {
             characterVelocity.y *= -1;
             characterPosition.y =
-                    Math.max(size / 2, Math.min(characterPosition.y, getHeight() - size / 2));
+                    Math.max(size / 2, Math.min(characterPosition.y, canvasHeight - size / 2));
         }
     }
 
     @Override
     protected void paintComponent(Graphics g) {
+        long start = System.nanoTime();
         super.paintComponent(g);
+        if (canvasPresenter != null) {
+            return; // Covered by the canvas, which the animator draws onto
+        }
         Graphics2D g2d = (Graphics2D) g;
 
-        g2d.drawImage(buffer, 0, 0, this);
+        // Never blocks: the newest complete frame, while the animator draws the next one. On a
+        // HiDPI screen the frame has more pixels than the panel, and the screen uses them all
+        FrameBuffers buffers = frameBuffers;
+        BufferedImage frame = buffers.acquireFrontFrame().image;
+        double scale = buffers.getScale();
+        g2d.drawImage(frame, 0, 0, (int) Math.round(frame.getWidth() / scale),
+                (int) Math.round(frame.getHeight() / scale), this);
         g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
-    }
+        metrics.recordStage(FrameMetrics.Stage.PAINT, System.nanoTime() - start);
 
-    private void drawBackground(Graphics2D g2d) {
-        fillSpaceBackground(g2d);
-        drawStars(g2d);
+        if (metricsOverlayVisible) {
+            drawMetricsOverlay(g2d);
+        }
     }
 
-    private void fillSpaceBackground(Graphics2D g2d) {
-        GradientPaint spaceGradient = new GradientPaint(0, 0, new Color(5, 10, 20), CANVAS_WIDTH,
-                CANVAS_HEIGHT, new Color(10, 20, 40));
-        g2d.setPaint(spaceGradient);
-        g2d.fillRect(0, 0, CANVAS_WIDTH, CANVAS_HEIGHT);
-    }
+    private void drawMetricsOverlay(Graphics2D g2d) {
+        // The text only changes a few times a second, so it is not rebuilt for every paint
+        long now = System.nanoTime();
+        if (now - metricsOverlayRefresh >= 0) {
+            metricsOverlayLines[0] = String.format("%.1f fps, %d dropped, %d ticks skipped",
+                    metrics.getFramesPerSecond(), metrics.getDroppedFrames(),
+                    metrics.getSkippedTicks());
+            metricsOverlayLines[1] = String.format("frame p50 %.2f p99 %.2f max %.2f ms",
+                    metrics.getFrameNanosP50() / 1e6, metrics.getFrameNanosP99() / 1e6,
+                    metrics.getMaxFrameNanos() / 1e6);
+            metricsOverlayLines[2] = String.format("update %.2f render %.2f paint %.2f ms",
+                    metrics.getMeanUpdateNanos() / 1e6, metrics.getMeanRenderNanos() / 1e6,
+                    metrics.getMeanPaintNanos() / 1e6);
+            metricsOverlayLines[3] = String.format("%,d bytes allocated per frame",
+                    metrics.getLastAllocatedBytes());
+            metricsOverlayRefresh = now + METRICS_OVERLAY_REFRESH;
+        }
 
-    private void drawStars(Graphics2D g2d) {
+        Rectangle box = metricsOverlayBounds;
+        g2d.setColor(Colors.METRICS_BACKGROUND);
+        g2d.fillRect(box.x, box.y, box.width, box.height);
         g2d.setColor(Color.WHITE);
-        for (int i = 0; i < 100; i++) {
-            float alpha = 0.1f + (float) Math.random() * 0.1f; // Semi-transparent
-            g2d.setComposite(AlphaComposite.getInstance(AlphaComposite.SRC_OVER, alpha));
+        if (metricsFont == null) {
+            metricsFont = g2d.getFont().deriveFont(11f);
+        }
+        g2d.setFont(metricsFont);
+        int lineHeight = box.height / METRICS_OVERLAY_LINES;
+        for (int i = 0; i < METRICS_OVERLAY_LINES; i++) {
+            g2d.drawString(metricsOverlayLines[i], box.x + 6, box.y + lineHeight * (i + 1) - 6);
+        }
+    }
 
-            int xCenter = (int) (Math.random() * CANVAS_WIDTH);
-            int yCenter = (int) (Math.random() * CANVAS_HEIGHT);
+    private void drawBackground(Graphics2D g2d) {
+        fillSpaceBackground(g2d);
+        starfield.paint(g2d, null); // Straight from the star list, sharp at any scale
+    }
 
-            int radius = 1;
+    private void drawBackgroundTile(Graphics2D g2d, Rectangle tile) {
+        g2d.transform(canvasTransform);
+        fillSpaceBackground(g2d);
 
-            for (int j = 0; j < 8; j++) {
-                int x1 = xCenter + (int) (radius * Math.cos(j * Math.PI / 4));
-                int y1 = yCenter + (int) (radius * Math.sin(j * Math.PI / 4));
-                int x2 = xCenter + (int) (radius * Math.cos((j + 1) * Math.PI / 4));
-                int y2 = yCenter + (int) (radius * Math.sin((j + 1) * Math.PI / 4));
-                g2d.drawLine(x1, y1, x2, y2);
-            }
-        }
+        // Only this tile's stars, straight from the star list
+        int x1 = (int) Math.floor(tile.x / renderScale);
+        int y1 = (int) Math.floor(tile.y / renderScale);
+        int x2 = (int) Math.ceil((tile.x + tile.width) / renderScale);
+        int y2 = (int) Math.ceil((tile.y + tile.height) / renderScale);
+        starfield.paint(g2d, new Rectangle(x1, y1, x2 - x1, y2 - y1));
+    }
 
-        // Reset alpha composite to fully opaque
-        g2d.setComposite(AlphaComposite.getInstance(AlphaComposite.SRC_OVER, 1.0f));
+    private void fillSpaceBackground(Graphics2D g2d) {
+        GradientPaint spaceGradient = new GradientPaint(0, 0, new Color(5, 10, 20), canvasWidth,
+                canvasHeight, new Color(10, 20, 40));
+        g2d.setPaint(spaceGradient);
+        g2d.fillRect(0, 0, canvasWidth, canvasHeight);
     }
 
     private void drawCharacter(Graphics2D g2d) {
@@ -194,229 +891,147 @@ public class AnimationPanel extends JPanel implements Runnable {
     }
 
     private void drawSun(Graphics2D g2d) {
-        int centerX = CANVAS_WIDTH / 4;
-        int centerY = CANVAS_HEIGHT / 4;
-        int sunRadius = 100;
-
-        sunPulseAngle += 0.05; // Adjust the speed of the pulsation
-        double sunPulse = Math.sin(sunPulseAngle) * 5; // Adjust the strength of the pulsation
-
-        RadialGradientPaint sunGradient =
-                new RadialGradientPaint(new Point2D.Double(centerX, centerY),
-                        (float) (sunRadius + sunPulse), new float[] {0.0f, 0.8f, 1.0f},
-                        new Color[] {Colors.SUN_YELLOW, Colors.SUN_ORANGE, Colors.SUN_RED});
-
-        g2d.setPaint(sunGradient);
-
-        drawMidpointEllipse(g2d, centerX, centerY, (int) (sunRadius + sunPulse),
-                (int) (sunRadius + sunPulse), true);
-
-        // Draw the sun's flare
-        g2d.setColor(new Color(255, 255, 255, 32)); // Semi-transparent white
-        g2d.setComposite(AlphaComposite.getInstance(AlphaComposite.SRC_OVER, 0.5f));
-        g2d.fillOval(centerX - sunRadius / 2, centerY - sunRadius / 2, sunRadius, sunRadius);
-
-        // Reset alpha composite to fully opaque
-        g2d.setComposite(AlphaComposite.getInstance(AlphaComposite.SRC_OVER, 1.0f));
+        int centerX = (int) (canvasWidth * scene.getSunX());
+        int centerY = (int) (canvasHeight * scene.getSunY());
+        int sunRadius = scene.getSunRadius();
+
+        double sunPulse = TrigTable.sin(renderSunPulseAngle) * scene.getSunPulse();
+
+        int reach = sunRadius + scene.getSunPulse() + 1;
+        setLayerBounds(LAYER_SUN, centerX - reach, centerY - reach, reach * 2, reach * 2);
+
+        // Filled straight into the buffer, so in buffer pixels
+        int bufferX = (int) Math.round(centerX * renderScale);
+        int bufferY = (int) Math.round(centerY * renderScale);
+        double bufferRadius = (sunRadius + sunPulse) * renderScale;
+        int sunSize = (int) bufferRadius;
+        sunGradient.setShape(bufferX, bufferY, (float) bufferRadius);
+        bufferRaster.fillEllipse(bufferX, bufferY, sunSize, sunSize, sunGradient);
+
+        // Draw the sun's flare, also into the buffer: an antialiased fillOval builds a new shape
+        int flareRadius = (int) Math.round(sunRadius / 2 * renderScale);
+        bufferRaster.fillCircle(bufferX, bufferY, flareRadius, SUN_FLARE);
     }
 
     private void drawEarth(Graphics2D g2d) {
-        int centerX = characterPosition.x;
-        int centerY = characterPosition.y;
-        int earthRadius = 40 + (characterAge / 5);
+        int centerX = renderX;
+        int centerY = renderY;
+        int earthRadius = scene.getEarthRadius(characterAge);
 
         // Light source direction
-        double lightAngle = Math.toRadians(earthRotationAngle + 45); // Adjust the angle as needed
-
-        // Create an off-screen image
-        BufferedImage earthImage =
-                new BufferedImage(earthRadius * 2, earthRadius * 2, BufferedImage.TYPE_INT_ARGB);
-        Graphics2D earthG2d = earthImage.createGraphics();
-        earthG2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING,
-                RenderingHints.VALUE_ANTIALIAS_ON);
-
-        // Draw the base blue ocean
-        earthG2d.setColor(Colors.OCEAN_BLUE);
-        drawMidpointCircle(earthG2d, earthRadius, earthRadius, earthRadius, true);
-
-        // Set clipping area for the continents and atmospheric effects on the off-screen image
-        earthG2d.setClip(new Ellipse2D.Double(0, 0, earthRadius * 2, earthRadius * 2));
-
-        // Draw Continents
-        drawContinents(earthG2d, earthRadius, earthRadius, earthRadius);
-
-        // Apply a shadow
-        applyShadow(earthG2d, earthRadius, lightAngle);
-
-        // Draw the Atmosphere
-        drawAtmosphere(earthG2d, earthRadius, earthRadius, earthRadius);
-
-        // Dispose off-screen image graphics context
-        earthG2d.dispose();
-
-        // Rotate the Earth
-        AffineTransform oldTransform = g2d.getTransform();
-        g2d.rotate(Math.toRadians(earthRotationAngle), centerX, centerY);
-
-        // Draw the off-screen image of the Earth
-        g2d.drawImage(earthImage, centerX - earthRadius, centerY - earthRadius, null);
-
-        // Reset the transform for other drawings
-        g2d.setTransform(oldTransform);
-
-        // Set clipping area for the clouds
-        g2d.setClip(new Ellipse2D.Double(centerX - earthRadius, centerY - earthRadius,
-                earthRadius * 2, earthRadius * 2));
-
-        // Draw Clouds
-        drawClouds(g2d, centerX, centerY, earthRadius);
+        double rotation = Math.toRadians(renderRotationAngle);
+        double lightAngle = Math.toRadians(renderRotationAngle + 45); // Adjust the angle as needed
+
+        // The rotated sprite reaches out to its corners
+        int reach = (int) Math.ceil(earthRadius * Math.sqrt(2)) + 1;
+        setLayerBounds(LAYER_EARTH, centerX - reach, centerY - reach, reach * 2, reach * 2);
+
+        // Pre-rendered layers for this radius in buffer pixels, blitted straight into the buffer:
+        // a rotated drawImage builds transforms and a shaped clip builds a region every frame
+        int spriteRadius = (int) Math.round(earthRadius * renderScale);
+        int spriteSize = spriteRadius * 2;
+        EarthSpriteCache.Sprite sprite = earthSprites.get(spriteRadius);
+        double bufferX = centerX * renderScale;
+        double bufferY = centerY * renderScale;
+
+        // Draw the surface, turning about the Earth's axis or, when flat, spun like a disc
+        if (globe != null) {
+            globe.draw(bufferRaster.getPixels(), bufferRaster.getWidth(), bufferRaster.getHeight(),
+                    (int) Math.round(bufferX), (int) Math.round(bufferY), spriteRadius, rotation);
+        } else {
+            bufferRaster.drawRotated(SpanRasterizer.pixelsOf(sprite.surface), spriteSize, bufferX,
+                    bufferY, TrigTable.cos(rotation), TrigTable.sin(rotation));
+        }
 
-        // Reset the clipping area
-        g2d.setClip(null);
+        // Turn the shadow (rendered for angle 0) towards the light. The flat disc spins as a
+        // whole, shadow included, while the globe only turns its texture under the light
+        double shadowAngle = globe != null ? lightAngle : rotation + lightAngle;
+        bufferRaster.drawRotated(SpanRasterizer.pixelsOf(sprite.shadow), spriteSize, bufferX,
+                bufferY, TrigTable.cos(shadowAngle), TrigTable.sin(shadowAngle));
+
+        // The atmosphere is radially symmetric and needs no rotation
+        int left = (int) Math.round(bufferX) - spriteRadius;
+        int top = (int) Math.round(bufferY) - spriteRadius;
+        bufferRaster.drawImage(SpanRasterizer.pixelsOf(sprite.atmosphere), spriteSize,
+                spriteSize, spriteSize, left, top);
+
+        // Draw the clouds, cut to the Earth's disc by its surface in a scratch layer
+        drawClouds(spriteRadius, rotation);
+        bufferRaster.drawMasked(cloudPixels, cloudLayer.getWidth(),
+                SpanRasterizer.pixelsOf(sprite.surface), spriteSize, spriteSize, spriteSize, left,
+                top);
     }
 
-    private void drawExplosion(Graphics2D g2d, int xCenter, int yCenter) {
-        int numberOfParticles = 50;
-        int maxRadius = 100;
-
-        for (int i = 0; i < numberOfParticles; i++) {
-            Color particleColor = new Color((int) (Math.random() * 256),
-                    (int) (Math.random() * 256), (int) (Math.random() * 256), 150); // Semi-transparent
-
-            int particleSize = (int) (Math.random() * 15 + 5); // Random size between 5 and 20
-            double angle = Math.random() * 2 * Math.PI; // Random direction
-            int distance = (int) (Math.random() * maxRadius); // Random distance from the center
-
-            int particleX = xCenter + (int) (distance * Math.cos(angle)) - particleSize / 2;
-            int particleY = yCenter + (int) (distance * Math.sin(angle)) - particleSize / 2;
+    /**
+     * Clears the top-left {@code size} pixels of the cloud scratch layer, growing the layer first
+     * if it is too small.
+     */
+    private void beginCloudLayer(int size) {
+        if (cloudLayer == null || cloudLayer.getWidth() < size) {
+            cloudLayer = new BufferedImage(size, size, BufferedImage.TYPE_INT_ARGB);
+            cloudRaster = new SpanRasterizer(cloudLayer);
+            cloudPixels = cloudRaster.getPixels();
+        }
 
-            g2d.setColor(particleColor);
-            g2d.fillOval(particleX, particleY, particleSize, particleSize);
+        int stride = cloudLayer.getWidth();
+        for (int row = 0; row < size; row++) {
+            Arrays.fill(cloudPixels, row * stride, row * stride + size, 0);
         }
     }
 
+    private void drawBodies(Graphics2D g2d) {
+        Rectangle area = bodies.getBounds();
+        setLayerBounds(LAYER_BODIES, area.x, area.y, area.width, area.height);
 
-    private void applyShadow(Graphics2D g2d, int earthRadius, double lightAngle) {
-        // Calculate the shadow angle
-        double shadowAngle = lightAngle + Math.PI;
-
-        // Create a gradient paint that simulates a shadow for depth
-        float[] dist = {0.0f, 1.0f};
-        Point2D center = new Point2D.Double(earthRadius + earthRadius * Math.cos(shadowAngle),
-                earthRadius + earthRadius * Math.sin(shadowAngle));
-        Color[] colors = {new Color(0, 0, 0, 100), new Color(0, 0, 0, 0)};
-        RadialGradientPaint p = new RadialGradientPaint(center, earthRadius, dist, colors);
-
-        g2d.setPaint(p);
-        g2d.fillOval(0, 0, earthRadius * 2, earthRadius * 2);
+        // Sprites are in buffer pixels, so the bodies are drawn unscaled
+        g2d.setTransform(deviceTransform);
+        bodies.draw(g2d, earthSprites, renderScale);
+        g2d.setTransform(canvasTransform);
     }
 
-    private void drawContinents(Graphics2D g2d, int centerX, int centerY, int earthRadius) {
-        double scale = earthRadius / 40.0;
-
-        // North America
-        g2d.setColor(Colors.FOREST_GREEN);
-
-        Path2D.Double continent1 = new Path2D.Double();
-        continent1.moveTo(centerX - 15 * (scale * 2), centerY - 5 * (scale * 2));
-        continent1.curveTo(centerX - 20 * (scale * 2), centerY - 30 * (scale * 2),
-                centerX - 5 * (scale * 2), centerY - 20 * (scale * 2), centerX - 10 * (scale * 2),
-                centerY - 5 * (scale * 2));
-        continent1.curveTo(centerX - 10 * (scale * 2), centerY - 5 * (scale * 2),
-                centerX - 10 * (scale * 2), centerY - 5 * (scale * 2), centerX - 15 * (scale * 2),
-                centerY - 5 * (scale * 2));
-        continent1.closePath();
-        g2d.fill(continent1);
-
-        // Africa
-        g2d.setColor(Colors.DESERT_BROWN);
-
-        Path2D.Double continent2 = new Path2D.Double();
-        continent2.moveTo(centerX, centerY);
-        continent2.curveTo(centerX + 10 * scale, centerY - 10 * scale, centerX + 5 * scale,
-                centerY - 30 * scale, centerX, centerY - 15 * scale);
-        continent2.closePath();
-        g2d.fill(continent2);
-
-        // Europe
-        g2d.setColor(Colors.MOUNTAIN_GRAY);
-
-        Path2D.Double continent3 = new Path2D.Double();
-        continent3.moveTo(centerX + 5 * scale, centerY - 10 * scale);
-        continent3.curveTo(centerX + 20 * scale, centerY - 15 * scale, centerX + 15 * scale,
-                centerY, centerX + 5 * scale, centerY - 5 * scale);
-        continent3.closePath();
-        g2d.fill(continent3);
-
-        // South America
-        g2d.setColor(Colors.FOREST_GREEN);
-
-        Path2D.Double continent4 = new Path2D.Double();
-        continent4.moveTo(centerX - 15 * scale, centerY + 5 * scale);
-        continent4.curveTo(centerX - 20 * scale, centerY + 30 * scale, centerX - 5 * scale,
-                centerY + 20 * scale, centerX - 10 * scale, centerY + 5 * scale);
-        continent4.closePath();
-        g2d.fill(continent4);
+    /**
+     * Spawns the next batch of explosion particles while the burst is young, and moves every
+     * particle on by one tick. Particles live at most as long as the explosion has left.
+     */
+    private void updateExplosion() {
+        if (characterAge > MAX_AGE - EXPLOSION_BATCHES) {
+            int batch = (EXPLOSION_PARTICLES + EXPLOSION_BATCHES - 1) / EXPLOSION_BATCHES;
+            explosionParticles.spawnBurst(characterPosition.x, characterPosition.y, batch,
+                    EXPLOSION_SPEED, Math.max(characterAge / 2, 1), characterAge);
+        }
+        explosionParticles.update();
+    }
 
-        // Asia
-        g2d.setColor(Colors.MOUNTAIN_GRAY);
+    private void drawExplosion(Graphics2D g2d) {
+        Rectangle area = explosionParticles.getBounds(renderAlpha);
+        Rectangle reach =
+                setLayerBounds(LAYER_EXPLOSION, area.x, area.y, area.width, area.height);
 
-        Path2D.Double continent5 = new Path2D.Double();
-        continent5.moveTo(centerX + 10 * scale, centerY - 5 * scale);
-        continent5.curveTo(centerX + 30 * scale, centerY - 10 * scale, centerX + 20 * scale,
-                centerY - 30 * scale, centerX + 10 * scale, centerY - 15 * scale);
-        continent5.closePath();
-        g2d.fill(continent5);
-
-        // Australia
-        g2d.setColor(Colors.DESERT_BROWN);
-
-        Path2D.Double continent6 = new Path2D.Double();
-        continent6.moveTo(centerX + 10 * scale, centerY + 5 * scale);
-        continent6.curveTo(centerX + 30 * scale, centerY + 10 * scale, centerX + 20 * scale,
-                centerY + 30 * scale, centerX + 10 * scale, centerY + 15 * scale);
-        continent6.closePath();
-        g2d.fill(continent6);
-    }
-
-    private void drawAtmosphere(Graphics2D g2d, int centerX, int centerY, int earthRadius) {
-        float[] dist = {0.7f, 1.0f};
-        Color[] colors = {new Color(255, 255, 255, 64), new Color(255, 255, 255, 0)};
-        RadialGradientPaint p = new RadialGradientPaint(new Point2D.Float(centerX, centerY),
-                earthRadius * 1.1f, dist, colors);
-        g2d.setPaint(p);
-        g2d.fillOval(centerX - earthRadius, centerY - earthRadius, earthRadius * 2,
-                earthRadius * 2);
-    }
-
-    private void drawClouds(Graphics2D g2d, int centerX, int centerY, int earthRadius) {
-        g2d.setColor(Colors.CLOUD_WHITE);
-
-        int maxClouds = 6; // Adjust the number of clouds
-        for (int i = 0; i < maxClouds; i++) {
-            int cloudSize = earthRadius / 4 + (int) (Math.random() * (earthRadius / 4));
-            int x = centerX - cloudSize + (int) (Math.random() * earthRadius) - earthRadius / 2;
-            int y = centerY - cloudSize + (int) (Math.random() * earthRadius) - earthRadius / 2;
-
-            Path2D.Double cloud = new Path2D.Double();
-            cloud.moveTo(x, y);
-            int numFluffs = 3 + (int) (Math.random() * 3) + 1; // 3 to 6 fluffs
-            for (int j = 0; j < numFluffs; j++) {
-                x += cloudSize / numFluffs;
-                double angle1 = Math.random() * Math.PI / 2;
-                double angle2 = Math.random() * Math.PI / 2;
-                cloud.curveTo(x + cloudSize * Math.cos(angle1), y - cloudSize * Math.sin(angle1),
-                        x + cloudSize * Math.cos(angle2), y + cloudSize * Math.sin(angle2), x, y);
-            }
-            cloud.closePath();
+        if (tileRenderer != null) {
+            tileRenderer.render(bufferImage, reach.x, reach.y, reach.width, reach.height,
+                    explosionPass);
+        } else {
+            explosionArea.setBounds(0, 0, bufferRaster.getWidth(), bufferRaster.getHeight());
+            Rectangle2D.intersect(explosionArea, reach, explosionArea);
+            paintExplosionParticles(g2d, explosionArea);
+        }
+    }
 
-            float opacity = 0.5f + (float) Math.random() * 0.3f; // Semi-transparent
-            g2d.setComposite(AlphaComposite.getInstance(AlphaComposite.SRC_OVER, opacity));
-            g2d.fill(cloud);
+    // Draws straight into the buffer's pixels, so a tile only touches its own area
+    private void paintExplosionParticles(Graphics2D g2d, Rectangle area) {
+        if (!area.isEmpty()) {
+            explosionParticles.draw(bufferRaster.getPixels(), bufferRaster.getWidth(), area,
+                    renderAlpha, (float) renderScale);
         }
+    }
 
-        // Reset alpha composite to fully opaque
-        g2d.setComposite(AlphaComposite.getInstance(AlphaComposite.SRC_OVER, 1.0f));
+    /**
+     * Draws the clouds into the scratch layer, for an Earth of the given radius in buffer pixels
+     * centered in the layer's top-left {@code spriteRadius * 2} pixels.
+     */
+    private void drawClouds(int spriteRadius, double rotation) {
+        beginCloudLayer(spriteRadius * 2);
+        clouds.draw(cloudRaster, spriteRadius, spriteRadius, spriteRadius, rotation);
     }
 
     /**
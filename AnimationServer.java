@@ -0,0 +1,309 @@
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBuffer;
+import java.awt.image.DirectColorModel;
+import java.awt.image.Raster;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.SplittableRandom;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+import javax.imageio.stream.MemoryCacheImageOutputStream;
+
+/**
+ * Serves the animation to many viewers at once over HTTP on the loopback interface, as one MJPEG
+ * stream per viewer, which browsers show in a plain {@code <img>}.
+ *
+ * <pre>
+ * java -Djava.awt.headless=true AnimationServer [port] [max sessions] [seed]
+ * </pre>
+ *
+ * Every request for {@code /stream} is a session: a panel of its own, run in real time on a
+ * virtual thread of its own from a stage of the grow-and-explode cycle, given as
+ * {@code ?stage=<tick>} or else staggered from session to session. {@code ?frames=<count>} ends
+ * the stream after that many frames. {@code /} is a page showing a few streams side by side.
+ *
+ * <p>
+ * All panels share one set of {@link SceneAssets}, so a session only holds its own simulation.
+ * Frames are rendered and encoded to JPEG by a few render threads, one per CPU, each into a frame
+ * of its own; frames and Java2D's per-thread rasterizer state grow with the number of render
+ * threads, not of sessions. Sessions beyond the limit are turned away with 503, and a session
+ * that falls behind skips ticks, so its animation keeps time at a lower frame rate.
+ */
+public class AnimationServer implements AutoCloseable {
+    public static final int DEFAULT_PORT = 8080;
+    public static final int DEFAULT_MAX_SESSIONS = 500;
+    public static final long DEFAULT_SEED = 42;
+
+    private static final String BOUNDARY = "frame";
+    private static final float JPEG_QUALITY = 0.8f;
+    private static final int STAGE_STEP = 25; // Ticks between the stages of successive sessions
+    private static final String INDEX_PAGE = """
+            <!DOCTYPE html>
+            <html><head><title>FromBabiesTo</title></head>
+            <body style="margin:0; background:#050a14">
+            <img src="/stream?stage=0"><img src="/stream?stage=50">
+            <img src="/stream?stage=100"><img src="/stream?stage=150">
+            </body></html>
+            """;
+
+    /**
+     * A frame rendered into for one session at a time, with what it takes to encode it.
+     */
+    private static final class RenderSlot {
+        final FrameBuffers.Frame frame;
+        final BufferedImage opaque; // The frame's pixels seen without alpha, as JPEG needs them
+        final ImageWriter writer;
+        final ImageWriteParam param;
+
+        RenderSlot(FrameBuffers.Frame frame) {
+            this.frame = frame;
+            int width = frame.image.getWidth();
+            int height = frame.image.getHeight();
+            DataBuffer pixels = frame.image.getRaster().getDataBuffer();
+            DirectColorModel rgb = new DirectColorModel(24, 0xFF0000, 0xFF00, 0xFF);
+            this.opaque = new BufferedImage(rgb, Raster.createPackedRaster(pixels, width, height,
+                    width, rgb.getMasks(), null), false, null);
+            this.writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+            this.param = writer.getDefaultWriteParam();
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(JPEG_QUALITY);
+        }
+
+        /**
+         * Replaces the content of {@code out} with the frame as a JPEG image.
+         */
+        void encode(ByteArrayOutputStream out) throws IOException {
+            out.reset();
+            try (ImageOutputStream stream = new MemoryCacheImageOutputStream(out)) {
+                writer.setOutput(stream);
+                writer.write(null, new IIOImage(opaque, null, null), param);
+            }
+        }
+    }
+
+    private final HttpServer server;
+    private final ExecutorService executor; // Runs the sessions
+    private final ExecutorService renderers;
+    private final SceneAssets assets;
+    private final long seed;
+    private final Semaphore sessions;
+    private final BlockingQueue<RenderSlot> slots; // As many as renderers, so never waited for
+    private final AtomicLong sessionCount = new AtomicLong(); // Sessions started so far
+
+    /**
+     * Creates a server with one render thread per CPU.
+     *
+     * @param port the port to listen on, or 0 for any free one.
+     */
+    public AnimationServer(int port, int maxSessions, long seed) throws IOException {
+        this(port, maxSessions, Runtime.getRuntime().availableProcessors(), seed);
+    }
+
+    /**
+     * @param port the port to listen on, or 0 for any free one.
+     * @param maxSessions the most streams served at once.
+     * @param renderThreads the number of threads rendering and encoding frames.
+     * @param seed the seed of the world every session shares, and of the sessions' own seeds.
+     */
+    public AnimationServer(int port, int maxSessions, int renderThreads, long seed)
+            throws IOException {
+        if (maxSessions <= 0 || renderThreads <= 0) {
+            throw new IllegalArgumentException("Session and thread counts must be positive.");
+        }
+
+        this.seed = seed;
+        this.assets = SceneAssets.create(Scene.loadDefault(), new SplittableRandom(seed));
+        this.sessions = new Semaphore(maxSessions);
+
+        // Every panel has the default size, so any of them can make frames for all
+        AnimationPanel prototype = new AnimationPanel(new SplittableRandom(seed), assets);
+        this.slots = new ArrayBlockingQueue<>(renderThreads);
+        for (int i = 0; i < renderThreads; i++) {
+            slots.add(new RenderSlot(prototype.createFrame()));
+        }
+
+        this.renderers = Executors.newFixedThreadPool(renderThreads);
+        this.executor = Executors.newVirtualThreadPerTaskExecutor();
+        this.server = HttpServer.create(
+                new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        server.setExecutor(executor);
+        server.createContext("/", this::index);
+        server.createContext("/stream", this::stream);
+    }
+
+    public void start() {
+        server.start();
+    }
+
+    /**
+     * Stops listening and ends every session.
+     */
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+        renderers.shutdownNow();
+    }
+
+    /**
+     * Returns the port the server listens on.
+     */
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    private void index(HttpExchange exchange) throws IOException {
+        if (!"/".equals(exchange.getRequestURI().getPath())) {
+            sendText(exchange, 404, "Not found\n");
+            return;
+        }
+        exchange.getResponseHeaders().set("Content-Type", "text/html; charset=utf-8");
+        sendText(exchange, 200, INDEX_PAGE);
+    }
+
+    private void stream(HttpExchange exchange) throws IOException {
+        if (!sessions.tryAcquire()) {
+            sendText(exchange, 503, "Too many viewers, try again later\n");
+            return;
+        }
+
+        try {
+            long session = sessionCount.getAndIncrement();
+            int cycle = AnimationPanel.getCycleTicks();
+            int stage = (int) (session * STAGE_STEP % cycle);
+            long frames = Long.MAX_VALUE;
+            String query = exchange.getRequestURI().getQuery();
+            try {
+                for (String parameter : query != null ? query.split("&") : new String[0]) {
+                    if (parameter.startsWith("stage=")) {
+                        stage = Math.floorMod(Integer.parseInt(parameter.substring(6)), cycle);
+                    } else if (parameter.startsWith("frames=")) {
+                        frames = Long.parseLong(parameter.substring(7));
+                    }
+                }
+            } catch (NumberFormatException e) {
+                sendText(exchange, 400, "Not a number: " + e.getMessage() + "\n");
+                return;
+            }
+
+            AnimationPanel panel = new AnimationPanel(new SplittableRandom(seed + session), assets);
+            panel.skipTicks(stage);
+
+            exchange.getResponseHeaders().set("Content-Type",
+                    "multipart/x-mixed-replace; boundary=" + BOUNDARY);
+            exchange.getResponseHeaders().set("Cache-Control", "no-cache");
+            exchange.sendResponseHeaders(200, 0);
+            try (OutputStream body = exchange.getResponseBody()) {
+                streamFrames(panel, frames, body);
+            }
+        } catch (IOException e) {
+            // The viewer went away
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt(); // The server is closing
+        } finally {
+            sessions.release();
+            exchange.close();
+        }
+    }
+
+    /**
+     * Renders and sends frames at the panel's tick rate. When a frame is late, the ticks there
+     * was no time for are run without rendering them.
+     */
+    private void streamFrames(AnimationPanel panel, long frames, OutputStream body)
+            throws IOException, InterruptedException {
+        ByteArrayOutputStream jpeg = new ByteArrayOutputStream();
+        Callable<Void> render = () -> {
+            RenderSlot slot = slots.take();
+            try {
+                panel.renderNextFrame(slot.frame);
+                slot.encode(jpeg); // Copied out, so a slow viewer does not hold up a renderer
+            } finally {
+                slots.add(slot);
+            }
+            return null;
+        };
+
+        long tickNanos = TimeUnit.SECONDS.toNanos(1) / panel.getTickRate();
+        long start = System.nanoTime();
+        long ticks = 0;
+
+        for (long frame = 0; frame < frames; frame++) {
+            long due = (System.nanoTime() - start) / tickNanos;
+            if (due > ticks) {
+                panel.skipTicks((int) Math.min(due - ticks, AnimationPanel.getCycleTicks()));
+                ticks = due;
+            }
+
+            try {
+                renderers.submit(render).get();
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof IOException cause) {
+                    throw cause;
+                }
+                throw new IllegalStateException("Rendering a frame failed", e.getCause());
+            }
+            ticks++;
+
+            String header = "--" + BOUNDARY + "\r\nContent-Type: image/jpeg\r\nContent-Length: "
+                    + jpeg.size() + "\r\n\r\n";
+            body.write(header.getBytes(StandardCharsets.US_ASCII));
+            jpeg.writeTo(body);
+            body.write('\r');
+            body.write('\n');
+            body.flush();
+
+            long wait = start + ticks * tickNanos - System.nanoTime();
+            if (wait > 0) {
+                TimeUnit.NANOSECONDS.sleep(wait);
+            }
+        }
+    }
+
+    private static void sendText(HttpExchange exchange, int status, String text)
+            throws IOException {
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        if (!exchange.getResponseHeaders().containsKey("Content-Type")) {
+            exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+        }
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream body = exchange.getResponseBody()) {
+            body.write(bytes);
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length > 3) {
+            System.err.println("Usage: AnimationServer [port] [max sessions] [seed]");
+            System.exit(2);
+        }
+
+        int port = args.length >= 1 ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+        int maxSessions = args.length >= 2 ? Integer.parseInt(args[1]) : DEFAULT_MAX_SESSIONS;
+        long seed = args.length == 3 ? Long.parseLong(args[2]) : DEFAULT_SEED;
+
+        AnimationServer server = new AnimationServer(port, maxSessions, seed);
+        Runtime.getRuntime().addShutdownHook(new Thread(server::close));
+        server.start();
+        System.out.printf("Serving up to %d sessions on http://%s:%d/%n", maxSessions,
+                InetAddress.getLoopbackAddress().getHostAddress(), server.getPort());
+    }
+}
@@ -0,0 +1,420 @@
+import java.awt.AlphaComposite;
+import java.awt.Color;
+import java.awt.Composite;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+import java.util.random.RandomGenerator;
+
+/**
+ * Thousands of independent Earths, each with its own position, velocity and grow-and-explode life
+ * cycle. State is kept in parallel primitive arrays (structure of arrays) rather than one object
+ * per body, and every update step is a flat loop over those arrays that the JIT can unroll and
+ * vectorize.
+ *
+ * <p>
+ * A body's life is a tick counter running from 0 to {@code 2 * maxAge}: it grows while the counter
+ * is below {@code maxAge}, explodes and shrinks back to nothing above it, and is respawned when the
+ * counter wraps around. A growing body that touches the sun or another growing body explodes at
+ * once, as if it had reached {@code maxAge}; bodies find the ones they might touch in a
+ * {@link SpatialGrid} rebuilt every tick. A body that has looked around knows how far it is at
+ * least from every other, and as bodies only move and grow so fast, it need not look again until
+ * the others could have closed that gap. A new body is tried once at a random place; if it would
+ * touch the sun, a growing body or another new one it is not born, but waits unseen for a few
+ * ticks and tries another place. The sun and the size of the bodies come from the
+ * {@link Scene}, as for the single Earth.
+ */
+public class BodySystem {
+    private static final float MAX_SPEED = 2.0f;
+    private static final int EXPLOSION_SIZE = 120;
+    private static final int EXPLOSION_PARTICLES = 40;
+    private static final int FADE_STEPS = 16;
+
+    private final int count;
+    private final int maxAge;
+    private final Scene scene;
+    private final RandomGenerator random;
+
+    // Body state, one entry per body
+    private final float[] x;
+    private final float[] y;
+    private final float[] vx;
+    private final float[] vy;
+    private final int[] lifeTicks;
+    private final float[] radii; // As of the last update
+    private final float[] radiusByTick; // The radius at every tick of a life
+    private final float growthRate; // How much a body grows in a tick, on average over its growth
+    private final float growthSlack; // The most its growth runs ahead of that average
+    private final int[] clearUntil; // The last tick each growing body is known to touch nothing
+    private final int[] growing; // Scratch list of the growing bodies
+    private final int[] due; // Scratch list of the growing bodies to look for collisions
+    private final boolean[] touching; // Scratch flags of the bodies that collide
+    private final int[] newborns; // Scratch list of the bodies to be born this tick
+    private final SpatialGrid grid; // Cells one and a half full-grown bodies wide, to see further
+    private final SpatialGrid newbornGrid; // Cells as wide as one, for the bodies born this tick
+
+    // Pre-rendered explosion, drawn with a fading alpha
+    private final BufferedImage explosionSprite;
+    private final Composite[] fades = new Composite[FADE_STEPS + 1];
+
+    private final Rectangle bounds = new Rectangle();
+    private int ticks;
+    private int growingCount; // Bodies in the growing list, which is kept from tick to tick
+    private int width;
+    private int height;
+    private float sunX;
+    private float sunY;
+
+    /**
+     * Spawns {@code count} bodies at random positions and life stages within the given area.
+     *
+     * @param scene the scene whose sun the bodies collide with and whose Earth they grow from.
+     */
+    public BodySystem(int count, int maxAge, Scene scene, int width, int height,
+            RandomGenerator random) {
+        this.count = count;
+        this.maxAge = maxAge;
+        this.scene = scene;
+        this.random = random;
+
+        this.x = new float[count];
+        this.y = new float[count];
+        this.vx = new float[count];
+        this.vy = new float[count];
+        this.lifeTicks = new int[count];
+        this.radii = new float[count];
+        this.clearUntil = new int[count];
+        this.growing = new int[count];
+        this.due = new int[count];
+        this.touching = new boolean[count];
+        this.newborns = new int[count];
+        this.grid = new SpatialGrid(3 * radius(maxAge));
+        this.newbornGrid = new SpatialGrid(2 * radius(maxAge));
+        this.radiusByTick = new float[2 * maxAge];
+        for (int tick = 0; tick < 2 * maxAge; tick++) {
+            radiusByTick[tick] = radius(tick < maxAge ? tick : 2 * maxAge - tick);
+        }
+        this.growthRate = (radiusByTick[maxAge - 1] - radiusByTick[0]) / Math.max(maxAge - 1, 1);
+        float slack = 0;
+        for (int from = 0; from < maxAge; from++) {
+            for (int to = from; to < maxAge; to++) {
+                slack = Math.max(slack,
+                        radiusByTick[to] - radiusByTick[from] - (to - from) * growthRate);
+            }
+        }
+        this.growthSlack = slack;
+        setArea(width, height);
+
+        int placing = 0;
+        for (int i = 0; i < count; i++) {
+            spawn(i);
+            lifeTicks[i] = random.nextInt(2 * maxAge);
+            radii[i] = radiusByTick[lifeTicks[i]];
+            if (lifeTicks[i] < maxAge) {
+                newborns[placing++] = i;
+            }
+        }
+        grid.build(x, y, radii, growing, 0); // The growing bodies are placed as if newborn
+        clearSpace(placing);
+
+        this.explosionSprite = renderExplosion(random);
+        for (int i = 0; i <= FADE_STEPS; i++) {
+            fades[i] = AlphaComposite.getInstance(AlphaComposite.SRC_OVER, i / (float) FADE_STEPS);
+        }
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    public int getAge(int body) {
+        int tick = lifeTicks[body];
+        return tick < maxAge ? tick : 2 * maxAge - tick;
+    }
+
+    public boolean isExploding(int body) {
+        return lifeTicks[body] >= maxAge;
+    }
+
+    /**
+     * Returns whether the body is waiting for room to be born, and is not drawn.
+     */
+    public boolean isWaiting(int body) {
+        return lifeTicks[body] < 0;
+    }
+
+    public float getX(int body) {
+        return x[body];
+    }
+
+    public float getY(int body) {
+        return y[body];
+    }
+
+    /**
+     * Changes the area the bodies bounce around in, and the sun's place in it.
+     */
+    public void setArea(int width, int height) {
+        this.width = width;
+        this.height = height;
+        this.sunX = (int) (width * scene.getSunX()); // Where the panel draws it
+        this.sunY = (int) (height * scene.getSunY());
+        Arrays.fill(clearUntil, ticks); // Bodies moved inside may jump
+    }
+
+    /**
+     * Advances every body by one tick.
+     */
+    public void update() {
+        ticks++;
+
+        // Life cycle; bodies that wrap around, or are waiting, are born below
+        int lifespan = 2 * maxAge;
+        for (int i = 0; i < count; i++) {
+            int tick = lifeTicks[i] + 1;
+            lifeTicks[i] = tick < lifespan ? tick : 0;
+        }
+
+        // Move the bodies that are not exploding, with the sign of the difference as the select,
+        // which the JIT would otherwise turn into a branch taken half the time
+        for (int i = 0; i < count; i++) {
+            float moving = (lifeTicks[i] - maxAge) >>> 31;
+            x[i] += vx[i] * moving;
+            y[i] += vy[i] * moving;
+        }
+
+        for (int i = 0; i < count; i++) {
+            radii[i] = radiusByTick[Math.max(lifeTicks[i], 0)];
+        }
+
+        // Bounce off the edges without branches: a body past an edge is clamped back inside and
+        // sent away from it, whichever way it was going
+        for (int i = 0; i < count; i++) {
+            float r = radii[i];
+            float clampedX = Math.max(r, Math.min(x[i], width - r));
+            float clampedY = Math.max(r, Math.min(y[i], height - r));
+            float pastX = Math.signum(x[i] - clampedX); // -1 past the left edge, 1 the right
+            float pastY = Math.signum(y[i] - clampedY);
+            vx[i] = vx[i] * (1 - Math.abs(pastX)) - pastX * Math.abs(vx[i]);
+            vy[i] = vy[i] * (1 - Math.abs(pastY)) - pastY * Math.abs(vy[i]);
+            x[i] = clampedX;
+            y[i] = clampedY;
+        }
+
+        // List the bodies that wrap around, or are done waiting, to be born, and keep those that
+        // still grow of the growing list, with those of them to look for collisions. Branch-free,
+        // as the bodies are in no predictable order: a sign bit is 1 where a difference is
+        // negative. The growing list stays in the grid's order, which the grid builds fastest from
+        int newbornCount = 0;
+        for (int i = 0; i < count; i++) {
+            int tick = lifeTicks[i];
+            newborns[newbornCount] = i;
+            newbornCount += (tick - 1 & ~tick) >>> 31; // Both are negative for 0 only
+        }
+        int kept = 0;
+        int dueCount = 0;
+        for (int k = 0; k < growingCount; k++) {
+            int body = growing[k];
+            int grows = lifeTicks[body] - maxAge >>> 31;
+            growing[kept] = body;
+            kept += grows;
+            due[dueCount] = body;
+            dueCount += grows & clearUntil[body] - ticks >>> 31;
+        }
+        growingCount = kept;
+
+        burn();
+        for (int k = 0; k < newbornCount; k++) {
+            spawn(newborns[k]);
+        }
+        collide(dueCount);
+        clearSpace(newbornCount);
+    }
+
+    /**
+     * Explodes the bodies of the growing list that touch the sun. They stay in the list, as they
+     * were growing until now.
+     */
+    private void burn() {
+        float sunRadius = scene.getSunRadius();
+        for (int k = 0; k < growingCount; k++) {
+            int body = growing[k];
+            float dx = x[body] - sunX;
+            float dy = y[body] - sunY;
+            float reach = radii[body] + sunRadius;
+            if (dx * dx + dy * dy < reach * reach) {
+                lifeTicks[body] = maxAge;
+            }
+        }
+    }
+
+    /**
+     * Explodes the bodies of the growing list that touch each other. Every collision is judged on
+     * where the bodies are before any of them explode, so the order of the bodies does not
+     * matter.
+     *
+     * <p>
+     * Only the first {@code dueCount} bodies of the due list, whose clearance may have run out,
+     * look for others, but every growing body is in the grid for them to find. Of two bodies
+     * that touch, at least one looks: each kept clear of those that were growing when it last
+     * looked, and the other was born later and has looked since.
+     */
+    private void collide(int dueCount) {
+        // Each of two bodies closes the gap by its speed and, as growing near an edge pushes it
+        // away from the edge, by twice its growth
+        float others = (float) (MAX_SPEED * Math.sqrt(2)) + 4 * growthRate;
+        grid.build(x, y, radii, growing, growingCount);
+        for (int k = 0; k < dueCount; k++) {
+            int body = due[k];
+            float clearance = grid.findClearance(body, touching) - 4 * growthSlack;
+            float closing = (float) Math.sqrt(vx[body] * vx[body] + vy[body] * vy[body]) + others;
+            clearUntil[body] = ticks + (int) Math.max(clearance / closing, 0);
+        }
+        for (int k = 0; k < growingCount; k++) {
+            int body = growing[k];
+            if (touching[body]) {
+                touching[body] = false;
+                lifeTicks[body] = maxAge; // Explodes from its full size, as at the end of a life
+            }
+        }
+    }
+
+    /**
+     * Lets the first {@code newbornCount} bodies of the newborn list be born where they were
+     * placed, unless they touch the sun, a growing body in the grid or another newborn, in which
+     * case they wait to be tried at another place later. Every body is tried once a tick at
+     * most, so there is no retrying inside a tick. Those born join the growing list.
+     *
+     * <p>
+     * The grid is the one {@link #collide(int)} built, so bodies that exploded since still keep
+     * newborns away, which only makes room scarcer. Of two newborns that touch, the one with the
+     * lower index is born, unless it is crowded out by something else.
+     */
+    private void clearSpace(int newbornCount) {
+        int clear = 0;
+        for (int k = 0; k < newbornCount; k++) {
+            int body = newborns[k];
+            if (touchesSun(body) || grid.findTouching(body) >= 0) {
+                postpone(body);
+            } else {
+                newborns[clear++] = body;
+            }
+        }
+
+        newbornGrid.build(x, y, radii, newborns, clear);
+        for (int k = 0; k < clear; k++) {
+            int body = newborns[k];
+            if (newbornGrid.findTouchingBefore(body) >= 0) {
+                postpone(body);
+            } else {
+                growing[growingCount++] = body;
+            }
+        }
+    }
+
+    /**
+     * Holds a body back from being born for a random number of ticks of up to a life's growth,
+     * counted up to 0 by its life tick, so a crowded field is not retried by every body on every
+     * tick.
+     */
+    private void postpone(int body) {
+        lifeTicks[body] = -random.nextInt(1, maxAge + 1);
+    }
+
+    private boolean touchesSun(int body) {
+        float dx = x[body] - sunX;
+        float dy = y[body] - sunY;
+        float reach = radii[body] + scene.getSunRadius();
+        return dx * dx + dy * dy < reach * reach;
+    }
+
+    /**
+     * Returns the area covered by all bodies. The rectangle is reused by the next call.
+     */
+    public Rectangle getBounds() {
+        float minX = Float.MAX_VALUE;
+        float minY = Float.MAX_VALUE;
+        float maxX = -Float.MAX_VALUE;
+        float maxY = -Float.MAX_VALUE;
+        for (int i = 0; i < count; i++) {
+            minX = Math.min(minX, x[i]);
+            minY = Math.min(minY, y[i]);
+            maxX = Math.max(maxX, x[i]);
+            maxY = Math.max(maxY, y[i]);
+        }
+
+        if (count == 0) {
+            bounds.setBounds(0, 0, 0, 0);
+        } else {
+            int reach = Math.max(radius(maxAge), EXPLOSION_SIZE / 2) + 1;
+            bounds.setBounds((int) minX - reach, (int) minY - reach,
+                    (int) (maxX - minX) + reach * 2, (int) (maxY - minY) + reach * 2);
+        }
+        return bounds;
+    }
+
+    /**
+     * Draws every body from the sprite cache, and exploding bodies as a fading burst.
+     *
+     * @param g2d the graphics to draw with, untransformed so one unit is one pixel.
+     * @param sprites the Earth sprites, looked up by their radius in pixels.
+     * @param scale how many pixels make up one unit of body position and size.
+     */
+    public void draw(Graphics2D g2d, EarthSpriteCache sprites, double scale) {
+        for (int i = 0; i < count; i++) {
+            if (!isExploding(i) && !isWaiting(i)) {
+                EarthSpriteCache.Sprite sprite =
+                        sprites.get((int) Math.round(radius(getAge(i)) * scale));
+                g2d.drawImage(sprite.getFlattened(), (int) (x[i] * scale) - sprite.radius,
+                        (int) (y[i] * scale) - sprite.radius, null);
+            }
+        }
+
+        int size = (int) Math.round(EXPLOSION_SIZE * scale);
+        for (int i = 0; i < count; i++) {
+            if (isExploding(i)) {
+                g2d.setComposite(fades[getAge(i) * FADE_STEPS / maxAge]);
+                g2d.drawImage(explosionSprite, (int) (x[i] * scale) - size / 2,
+                        (int) (y[i] * scale) - size / 2, size, size, null);
+            }
+        }
+        g2d.setComposite(AlphaComposite.SrcOver);
+    }
+
+    private int radius(int age) {
+        return scene.getEarthRadius(age);
+    }
+
+    private void spawn(int body) {
+        clearUntil[body] = ticks; // Looks around once it grows
+        int half = radius(0);
+        x[body] = half + random.nextFloat() * Math.max(width - 2 * half, 1);
+        y[body] = half + random.nextFloat() * Math.max(height - 2 * half, 1);
+        vx[body] = random.nextFloat(-MAX_SPEED, MAX_SPEED);
+        vy[body] = random.nextFloat(-MAX_SPEED, MAX_SPEED);
+    }
+
+    private static BufferedImage renderExplosion(RandomGenerator random) {
+        BufferedImage image =
+                new BufferedImage(EXPLOSION_SIZE, EXPLOSION_SIZE, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g2d = image.createGraphics();
+        g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+
+        int center = EXPLOSION_SIZE / 2;
+        int maxDistance = center - 10;
+        for (int i = 0; i < EXPLOSION_PARTICLES; i++) {
+            g2d.setColor(new Color(random.nextInt(256), random.nextInt(256), random.nextInt(256),
+                    150)); // Semi-transparent
+            int size = random.nextInt(5, 20);
+            double angle = random.nextDouble(2 * Math.PI);
+            int distance = random.nextInt(maxDistance - size / 2);
+            g2d.fillOval(center + (int) (distance * Math.cos(angle)) - size / 2,
+                    center + (int) (distance * Math.sin(angle)) - size / 2, size, size);
+        }
+
+        g2d.dispose();
+        return image;
+    }
+}
@@ -0,0 +1,162 @@
+import java.awt.AlphaComposite;
+import java.awt.Canvas;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.GraphicsConfiguration;
+import java.awt.Rectangle;
+import java.awt.Transparency;
+import java.awt.image.BufferStrategy;
+import java.awt.image.BufferedImage;
+import java.awt.image.VolatileImage;
+import java.util.function.Consumer;
+
+/**
+ * Presents frames on a heavyweight canvas through a {@link BufferStrategy}, drawn by the
+ * rendering thread itself (active rendering) instead of through Swing's repaint manager, which
+ * may coalesce and delay repaints. Every frame handed to {@link #present} reaches the screen.
+ *
+ * <p>
+ * The newest frame is mirrored in a {@link VolatileImage}, which lives in video memory when the
+ * pipeline allows. Only the area that changed since the previous frame is uploaded into it, and
+ * it is then copied whole into the strategy's back buffer, which is a volatile image as well when
+ * the pipeline allows. Either may lose its contents at any time, e.g. when the display mode
+ * changes; the frame is then drawn again.
+ */
+public class CanvasPresenter extends Canvas {
+    private static final int MAX_ATTEMPTS = 3; // Draws of one frame before giving up on it
+
+    private final int bufferCount;
+    private volatile BufferStrategy strategy; // Set while the canvas has a peer
+
+    // Owned by the presenting thread
+    private VolatileImage surface;
+    private FrameBuffers surfaceSource; // The buffers the surface mirrors a frame of
+    private boolean surfaceStale = true; // Must be uploaded whole before the next show
+
+    /**
+     * @param bufferCount the number of buffers of the strategy: 2 for double buffering, 3 for
+     *        triple buffering.
+     */
+    public CanvasPresenter(int bufferCount) {
+        if (bufferCount < 2) {
+            throw new IllegalArgumentException("At least two buffers are needed.");
+        }
+
+        this.bufferCount = bufferCount;
+        setIgnoreRepaint(true); // Everything is drawn by present
+        setBackground(Color.BLACK);
+    }
+
+    @Override
+    public void addNotify() {
+        super.addNotify();
+        // Tries flipping and blitting between accelerated buffers before unaccelerated ones
+        createBufferStrategy(bufferCount);
+        strategy = getBufferStrategy();
+    }
+
+    @Override
+    public void removeNotify() {
+        strategy = null; // The buffers go away with the peer
+        super.removeNotify();
+    }
+
+    /**
+     * Returns whether the strategy's back buffers are in video memory, or false while the canvas
+     * is not displayable.
+     */
+    public boolean isAccelerated() {
+        BufferStrategy current = strategy;
+        return current != null && current.getCapabilities().getBackBufferCapabilities()
+                .isAccelerated();
+    }
+
+    /**
+     * Shows the newest published frame of {@code buffers}. Presenter thread only: the caller
+     * takes the place of the EDT as the presenter of the buffers.
+     *
+     * @param damage the area of the frame that changed since the previously published one, in
+     *        frame pixels.
+     * @param overlay drawn over the frame, in logical pixels, or null.
+     * @return true if the frame was shown, false if the canvas is not displayable or kept losing
+     *         its contents.
+     */
+    public boolean present(FrameBuffers buffers, Rectangle damage, Consumer<Graphics2D> overlay) {
+        BufferStrategy current = strategy;
+        BufferedImage frame = buffers.acquireFrontFrame().image;
+        if (current == null) {
+            surfaceStale = true; // Frames are going by without reaching the surface
+            return false;
+        }
+
+        try {
+            for (int attempt = 0; attempt < MAX_ATTEMPTS; attempt++) {
+                updateSurface(buffers, frame, damage);
+                do {
+                    Graphics2D g2d = (Graphics2D) current.getDrawGraphics();
+                    try {
+                        double scale = buffers.getScale();
+                        g2d.drawImage(surface, 0, 0, (int) Math.round(frame.getWidth() / scale),
+                                (int) Math.round(frame.getHeight() / scale), null);
+                        if (overlay != null) {
+                            overlay.accept(g2d);
+                        }
+                    } finally {
+                        g2d.dispose();
+                    }
+                } while (current.contentsRestored());
+
+                if (surface.contentsLost()) {
+                    surfaceStale = true; // Lost while being copied; upload it again
+                    continue;
+                }
+                current.show();
+                if (!current.contentsLost()) {
+                    return true;
+                }
+            }
+        } catch (IllegalStateException e) {
+            surfaceStale = true; // The peer went away while drawing
+        }
+        return false;
+    }
+
+    /**
+     * Brings the surface up to date with {@code frame}, uploading only the damaged area unless
+     * the surface was lost, resized or last mirrored other buffers.
+     */
+    private void updateSurface(FrameBuffers buffers, BufferedImage frame, Rectangle damage) {
+        GraphicsConfiguration configuration = getGraphicsConfiguration();
+        int width = frame.getWidth();
+        int height = frame.getHeight();
+        int state = surface != null && surface.getWidth() == width
+                && surface.getHeight() == height ? surface.validate(configuration)
+                        : VolatileImage.IMAGE_INCOMPATIBLE;
+        if (state == VolatileImage.IMAGE_INCOMPATIBLE) {
+            if (surface != null) {
+                surface.flush();
+            }
+            surface = configuration.createCompatibleVolatileImage(width, height,
+                    Transparency.OPAQUE);
+            surfaceStale = true;
+        } else if (state == VolatileImage.IMAGE_RESTORED) {
+            surfaceStale = true; // Usable again, but empty
+        }
+        if (buffers != surfaceSource) {
+            surfaceSource = buffers; // The canvas was resized
+            surfaceStale = true;
+        }
+
+        Graphics2D g2d = surface.createGraphics();
+        g2d.setComposite(AlphaComposite.Src); // Frames are opaque: a plain copy
+        if (surfaceStale) {
+            g2d.drawImage(frame, 0, 0, null);
+        } else if (!damage.isEmpty()) {
+            int x2 = damage.x + damage.width;
+            int y2 = damage.y + damage.height;
+            g2d.drawImage(frame, damage.x, damage.y, x2, y2, damage.x, damage.y, x2, y2, null);
+        }
+        g2d.dispose();
+        surfaceStale = false;
+    }
+}
@@ -0,0 +1,198 @@
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.geom.Path2D;
+import java.awt.geom.Point2D;
+import java.awt.image.BufferedImage;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.random.RandomGenerator;
+
+/**
+ * Clouds that persist from frame to frame and drift over the globe, kept in parallel primitive
+ * arrays. Every cloud gets a shape, an opacity and a place on the globe once, and the wind moves
+ * it a little along its latitude every tick. It turns with the Earth by being drawn at the
+ * Earth's rotation.
+ *
+ * <p>
+ * Shapes are rasterized into small ARGB masks for every Earth radius they are drawn at, cached in
+ * least-recently-used order, so a frame only blends the masks into place. A cloud is drawn
+ * without foreshortening while its center faces the viewer, and not at all once it has turned
+ * away. Systems made from the same shapes share their masks, and may draw on different threads.
+ */
+public class CloudSystem {
+    private static final int MIN_FLUFFS = 4;
+    private static final int MAX_FLUFFS = 6;
+    private static final double MAX_LATITUDE = Math.toRadians(60);
+    private static final double MAX_WIND = Math.toRadians(0.3); // Longitude per tick
+
+    private final int count;
+    private final double[] latitude;
+    private final double[] longitude;
+    private final double[] wind;
+    private final double[] size; // Extent of the shape, as a fraction of the Earth's radius
+    private final int[] fluffs;
+    private final double[] angles; // Two control point angles per fluff
+    private final int[] color; // Cloud white at the cloud's opacity
+    private final Map<Integer, int[][]> masks; // Shared with systems of the same shapes
+
+    private final Point2D.Double location = new Point2D.Double();
+
+    /**
+     * @param count the number of clouds.
+     * @param capacity the most Earth radii to keep masks for.
+     * @param random the source of cloud shapes, opacities, places and winds.
+     */
+    public CloudSystem(int count, int capacity, RandomGenerator random) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive.");
+        }
+
+        this.count = count;
+        this.latitude = new double[count];
+        this.longitude = new double[count];
+        this.wind = new double[count];
+        this.size = new double[count];
+        this.fluffs = new int[count];
+        this.angles = new double[count * MAX_FLUFFS * 2];
+        this.color = new int[count];
+        this.masks = new LinkedHashMap<>(capacity * 2, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, int[][]> eldest) {
+                return size() > capacity;
+            }
+        };
+
+        int white = Colors.CLOUD_WHITE.getRGB() & 0xFFFFFF;
+        for (int i = 0; i < count; i++) {
+            latitude[i] = random.nextDouble(-MAX_LATITUDE, MAX_LATITUDE);
+            longitude[i] = random.nextDouble(2 * Math.PI);
+            wind[i] = random.nextDouble(-MAX_WIND, MAX_WIND);
+            size[i] = 0.25 + random.nextDouble(0.25);
+            fluffs[i] = random.nextInt(MIN_FLUFFS, MAX_FLUFFS + 1);
+            for (int j = 0; j < MAX_FLUFFS * 2; j++) {
+                angles[i * MAX_FLUFFS * 2 + j] = random.nextDouble(Math.PI / 2);
+            }
+            int alpha = (int) Math.round(255 * (0.5 + random.nextDouble(0.3))); // 0.5 to 0.8
+            color[i] = alpha << 24 | white;
+        }
+    }
+
+    /**
+     * Creates clouds of the same shapes and opacities as {@code shapes}, sharing its masks, at
+     * places and with winds of their own.
+     *
+     * @param random the source of cloud places and winds.
+     */
+    public CloudSystem(CloudSystem shapes, RandomGenerator random) {
+        this.count = shapes.count;
+        this.latitude = new double[count];
+        this.longitude = new double[count];
+        this.wind = new double[count];
+        this.size = shapes.size;
+        this.fluffs = shapes.fluffs;
+        this.angles = shapes.angles;
+        this.color = shapes.color;
+        this.masks = shapes.masks;
+
+        for (int i = 0; i < count; i++) {
+            latitude[i] = random.nextDouble(-MAX_LATITUDE, MAX_LATITUDE);
+            longitude[i] = random.nextDouble(2 * Math.PI);
+            wind[i] = random.nextDouble(-MAX_WIND, MAX_WIND);
+        }
+    }
+
+    public int size() {
+        return count;
+    }
+
+    /**
+     * Moves every cloud on by one tick of wind.
+     */
+    public void update() {
+        for (int i = 0; i < count; i++) {
+            longitude[i] += wind[i];
+            if (longitude[i] < 0) {
+                longitude[i] += 2 * Math.PI;
+            } else if (longitude[i] >= 2 * Math.PI) {
+                longitude[i] -= 2 * Math.PI;
+            }
+        }
+    }
+
+    /**
+     * Blends the clouds facing the viewer over the target, for an Earth centered at the given
+     * point. Nothing is allocated once the masks for the radius are cached.
+     *
+     * @param radius the radius of the Earth in pixels. Must be positive.
+     * @param rotation how far the Earth has turned eastwards, in radians.
+     */
+    public void draw(SpanRasterizer target, int xCenter, int yCenter, int radius,
+            double rotation) {
+        int[][] radiusMasks = masksFor(radius);
+        for (int i = 0; i < count; i++) {
+            if (GlobeRenderer.locate(latitude[i], longitude[i], rotation, location) < 0) {
+                continue; // On the far side
+            }
+
+            int side = maskSize(i, radius);
+            int x = (int) Math.round(xCenter + location.x * radius) - side / 2;
+            int y = (int) Math.round(yCenter + location.y * radius) - side / 2;
+            target.drawImage(radiusMasks[i], side, side, side, x, y);
+        }
+    }
+
+    private int[][] masksFor(int radius) {
+        synchronized (masks) {
+            int[][] radiusMasks = masks.get(radius);
+            if (radiusMasks == null) {
+                radiusMasks = new int[count][];
+                for (int i = 0; i < count; i++) {
+                    radiusMasks[i] = renderMask(i, radius);
+                }
+                masks.put(radius, radiusMasks);
+            }
+            return radiusMasks;
+        }
+    }
+
+    /**
+     * Returns the width and height of a cloud's mask: the shape reaches one extent to the right
+     * of its start and one extent above and below it.
+     */
+    private int maskSize(int cloud, int radius) {
+        return (int) Math.ceil(size[cloud] * radius) * 2 + 2;
+    }
+
+    private int[] renderMask(int cloud, int radius) {
+        if (radius <= 0) {
+            throw new IllegalArgumentException("Radius must be positive.");
+        }
+
+        double extent = size[cloud] * radius;
+        int side = maskSize(cloud, radius);
+        double x = 1;
+        double y = side / 2.0;
+
+        // A row of fluffs, each a loop out and back to the baseline
+        Path2D.Double shape = new Path2D.Double();
+        shape.moveTo(x, y);
+        int n = fluffs[cloud];
+        for (int j = 0; j < n; j++) {
+            x += extent / n;
+            double angle1 = angles[cloud * MAX_FLUFFS * 2 + j * 2];
+            double angle2 = angles[cloud * MAX_FLUFFS * 2 + j * 2 + 1];
+            shape.curveTo(x + extent * Math.cos(angle1), y - extent * Math.sin(angle1),
+                    x + extent * Math.cos(angle2), y + extent * Math.sin(angle2), x, y);
+        }
+        shape.closePath();
+
+        BufferedImage mask = new BufferedImage(side, side, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g2d = mask.createGraphics();
+        g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        g2d.setColor(new Color(color[cloud], true));
+        g2d.fill(shape);
+        g2d.dispose();
+        return SpanRasterizer.pixelsOf(mask);
+    }
+}
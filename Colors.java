@@ -18,4 +18,7 @@ public class Colors {
     public static final Color SUN_YELLOW = Color.decode("#FFD700");
     public static final Color SUN_ORANGE = Color.decode("#FFA500");
     public static final Color SUN_RED = Color.decode("#FF4500");
+
+    // Translucent black behind the metrics overlay
+    public static final Color METRICS_BACKGROUND = new Color(0, 0, 0, 160);
 }
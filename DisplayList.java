@@ -0,0 +1,137 @@
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A flat list of filled paths, compiled once and replayed any number of times. Commands are
+ * stored as opcodes in one int array, their coordinates in one double array and their colors as
+ * ready-made {@link Color}s, so a replay only walks the arrays: it parses nothing and, drawing
+ * through a {@link ReusablePath}, allocates nothing.
+ */
+public final class DisplayList {
+    private static final int COLOR = 0; // Followed by an index into colors
+    private static final int MOVE = 1; // Two coordinates
+    private static final int LINE = 2; // Two coordinates
+    private static final int CURVE = 3; // Six coordinates
+    private static final int CLOSE = 4;
+    private static final int FILL = 5; // Fills the path built since the previous fill
+
+    private final int[] ops;
+    private final double[] coords;
+    private final Color[] colors;
+
+    private DisplayList(int[] ops, double[] coords, Color[] colors) {
+        this.ops = ops;
+        this.coords = coords;
+        this.colors = colors;
+    }
+
+    /**
+     * Returns the number of commands in the list.
+     */
+    public int size() {
+        return ops.length;
+    }
+
+    /**
+     * Draws the list with its origin at {@code (x, y)} and every coordinate multiplied by
+     * {@code scale}.
+     *
+     * @param path the path every shape is built in, emptied first.
+     */
+    public void replay(Graphics2D g2d, ReusablePath path, double x, double y, double scale) {
+        path.reset();
+        for (int i = 0, c = 0; i < ops.length; i++) {
+            switch (ops[i]) {
+                case COLOR -> g2d.setColor(colors[ops[++i]]);
+                case MOVE -> {
+                    path.moveTo(x + coords[c] * scale, y + coords[c + 1] * scale);
+                    c += 2;
+                }
+                case LINE -> {
+                    path.lineTo(x + coords[c] * scale, y + coords[c + 1] * scale);
+                    c += 2;
+                }
+                case CURVE -> {
+                    path.curveTo(x + coords[c] * scale, y + coords[c + 1] * scale,
+                            x + coords[c + 2] * scale, y + coords[c + 3] * scale,
+                            x + coords[c + 4] * scale, y + coords[c + 5] * scale);
+                    c += 6;
+                }
+                case CLOSE -> path.closePath();
+                case FILL -> {
+                    g2d.fill(path);
+                    path.reset();
+                }
+                default -> throw new IllegalStateException("Unknown opcode " + ops[i]);
+            }
+        }
+    }
+
+    /**
+     * Collects commands for a {@link DisplayList}. Paths are started with {@link #color} and
+     * ended with {@link #fill}.
+     */
+    public static final class Builder {
+        private int[] ops = new int[64];
+        private double[] coords = new double[128];
+        private int opCount;
+        private int coordCount;
+        private final List<Color> colors = new ArrayList<>();
+
+        public Builder color(Color color) {
+            int index = colors.indexOf(color);
+            if (index < 0) {
+                index = colors.size();
+                colors.add(color);
+            }
+            return op(COLOR).op(index);
+        }
+
+        public Builder moveTo(double x, double y) {
+            return op(MOVE).coords(x, y);
+        }
+
+        public Builder lineTo(double x, double y) {
+            return op(LINE).coords(x, y);
+        }
+
+        public Builder curveTo(double x1, double y1, double x2, double y2, double x3,
+                double y3) {
+            return op(CURVE).coords(x1, y1, x2, y2, x3, y3);
+        }
+
+        public Builder closePath() {
+            return op(CLOSE);
+        }
+
+        public Builder fill() {
+            return op(FILL);
+        }
+
+        public DisplayList build() {
+            return new DisplayList(Arrays.copyOf(ops, opCount),
+                    Arrays.copyOf(coords, coordCount), colors.toArray(new Color[0]));
+        }
+
+        private Builder op(int op) {
+            if (opCount == ops.length) {
+                ops = Arrays.copyOf(ops, ops.length * 2);
+            }
+            ops[opCount++] = op;
+            return this;
+        }
+
+        private Builder coords(double... values) {
+            if (coordCount + values.length > coords.length) {
+                coords = Arrays.copyOf(coords, Math.max(coords.length * 2,
+                        coordCount + values.length));
+            }
+            System.arraycopy(values, 0, coords, coordCount, values.length);
+            coordCount += values.length;
+            return this;
+        }
+    }
+}
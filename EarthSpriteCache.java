@@ -0,0 +1,139 @@
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+
+/**
+ * Caches pre-rendered Earth layers by radius so a frame only has to blit them. The Earth is split
+ * into three layers: the surface (ocean and continents), the shadow and the atmosphere. The shadow
+ * is rendered once with the light coming from angle 0 and rotated into place when drawn, so the
+ * cache does not depend on the light direction at all.
+ *
+ * <p>
+ * Sprites are kept in an array indexed by radius, so a hit is an array read without a lock or a
+ * boxed key. Once {@code capacity} radii are cached, the one cached first is evicted. The cache
+ * may be shared between threads; misses and painters run under its lock, one layer at a time.
+ */
+public class EarthSpriteCache {
+    /**
+     * Paints one layer of an Earth of the given radius, centered at {@code (radius, radius)}.
+     */
+    @FunctionalInterface
+    public interface LayerPainter {
+        void paint(Graphics2D g2d, int radius);
+    }
+
+    public static final class Sprite {
+        public final int radius;
+        public final BufferedImage surface;
+        public final BufferedImage shadow;
+        public final BufferedImage atmosphere;
+
+        private BufferedImage flattened;
+
+        private Sprite(int radius, BufferedImage surface, BufferedImage shadow,
+                BufferedImage atmosphere) {
+            this.radius = radius;
+            this.surface = surface;
+            this.shadow = shadow;
+            this.atmosphere = atmosphere;
+        }
+
+        /**
+         * Returns all three layers composited into one image, with the light at angle 0. For
+         * callers that draw many unrotated Earths and want a single blit per Earth.
+         */
+        public synchronized BufferedImage getFlattened() {
+            if (flattened == null) {
+                flattened = renderLayer((g2d, r) -> {
+                    g2d.drawImage(surface, 0, 0, null);
+                    g2d.drawImage(shadow, 0, 0, null);
+                    g2d.drawImage(atmosphere, 0, 0, null);
+                }, radius);
+            }
+            return flattened;
+        }
+    }
+
+    private final LayerPainter surfacePainter;
+    private final LayerPainter shadowPainter;
+    private final LayerPainter atmospherePainter;
+    private final int[] cachedRadii; // In the order they were cached, as a ring
+    private int oldest = 0; // Index of the first cached radius in the ring
+    private int count = 0;
+    private volatile Sprite[] sprites = new Sprite[0]; // By radius; grown and replaced as needed
+
+    public EarthSpriteCache(int capacity, LayerPainter surfacePainter, LayerPainter shadowPainter,
+            LayerPainter atmospherePainter) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive.");
+        }
+
+        this.surfacePainter = surfacePainter;
+        this.shadowPainter = shadowPainter;
+        this.atmospherePainter = atmospherePainter;
+        this.cachedRadii = new int[capacity];
+    }
+
+    /**
+     * Returns the sprite for the given radius, rendering it on first use.
+     *
+     * @param radius the Earth radius in pixels. Must be positive.
+     * @return the cached sprite.
+     */
+    public Sprite get(int radius) {
+        // Sprites only have final fields, so one read without the lock sees it whole
+        Sprite[] byRadius = sprites;
+        if (radius > 0 && radius < byRadius.length && byRadius[radius] != null) {
+            return byRadius[radius];
+        }
+        return render(radius);
+    }
+
+    public synchronized int size() {
+        return count;
+    }
+
+    public synchronized void clear() {
+        sprites = new Sprite[0];
+        oldest = 0;
+        count = 0;
+    }
+
+    private synchronized Sprite render(int radius) {
+        Sprite[] byRadius = sprites;
+        if (radius > 0 && radius < byRadius.length && byRadius[radius] != null) {
+            return byRadius[radius]; // Rendered by another thread while this one waited
+        }
+
+        Sprite sprite = new Sprite(radius, renderLayer(surfacePainter, radius),
+                renderLayer(shadowPainter, radius), renderLayer(atmospherePainter, radius));
+        if (radius >= byRadius.length) {
+            byRadius = Arrays.copyOf(byRadius, Math.max(radius + 1, byRadius.length * 2));
+        }
+        if (count == cachedRadii.length) {
+            byRadius[cachedRadii[oldest]] = null;
+            oldest = (oldest + 1) % cachedRadii.length;
+            count--;
+        }
+        cachedRadii[(oldest + count) % cachedRadii.length] = radius;
+        count++;
+        byRadius[radius] = sprite;
+        sprites = byRadius; // Published after the sprite is stored
+        return sprite;
+    }
+
+    private static BufferedImage renderLayer(LayerPainter painter, int radius) {
+        if (radius <= 0) {
+            throw new IllegalArgumentException("Radius must be positive.");
+        }
+
+        BufferedImage image =
+                new BufferedImage(radius * 2, radius * 2, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g2d = image.createGraphics();
+        g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        painter.paint(g2d, radius);
+        g2d.dispose();
+        return image;
+    }
+}
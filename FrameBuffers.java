@@ -0,0 +1,126 @@
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * A lock-free triple buffer that hands complete frames from one rendering thread to one
+ * presenting thread (usually the EDT).
+ *
+ * <p>
+ * The renderer always draws into its own back frame and then {@link #publish() publishes} it by
+ * swapping it with the frame in the middle slot. The presenter {@link #acquireFrontFrame()
+ * acquires} the newest published frame by swapping its own front frame into the middle slot.
+ * Neither side ever waits for the other, and the presenter never sees a frame that is still
+ * being drawn. If the renderer publishes twice before the presenter looks, the older frame is
+ * simply dropped.
+ */
+public class FrameBuffers {
+    private static final int FRAME_COUNT = 3;
+
+    public static final class Frame {
+        public final BufferedImage image;
+        public final Graphics2D graphics;
+        public final SpanRasterizer raster;
+        public final LayerCompositor compositor;
+
+        // Set when the renderer publishes the frame, cleared when the presenter gives it back
+        private volatile boolean fresh;
+
+        private Frame(BufferedImage background, int layerCount) {
+            this.image = new BufferedImage(background.getWidth(), background.getHeight(),
+                    BufferedImage.TYPE_INT_ARGB);
+            this.graphics = image.createGraphics();
+            this.graphics.setRenderingHint(RenderingHints.KEY_ANTIALIASING,
+                    RenderingHints.VALUE_ANTIALIAS_ON);
+            this.raster = new SpanRasterizer(image);
+            this.compositor = new LayerCompositor(image, background, layerCount);
+        }
+    }
+
+    private final double scale;
+    private final Frame[] frames;
+    private final AtomicReference<Frame> middle;
+    private Frame back; // Owned by the renderer
+    private Frame front; // Owned by the presenter
+
+    // Renderer side bookkeeping of what the last published frame drew
+    private final Rectangle publishedBounds = new Rectangle();
+    private final Rectangle damage = new Rectangle();
+
+    /**
+     * Creates the frames, each compositing {@code layerCount} layers over {@code background}.
+     *
+     * @param scale how many image pixels make up one pixel on screen, for HiDPI displays.
+     */
+    public FrameBuffers(BufferedImage background, int layerCount, double scale) {
+        this.scale = scale;
+        this.frames = new Frame[FRAME_COUNT];
+        for (int i = 0; i < FRAME_COUNT; i++) {
+            frames[i] = new Frame(background, layerCount);
+        }
+
+        this.back = frames[0];
+        this.middle = new AtomicReference<>(frames[1]);
+        this.front = frames[2];
+    }
+
+    /**
+     * Creates a frame outside any triple buffer, compositing {@code layerCount} layers over
+     * {@code background}, for renderers that keep frames in a pool of their own.
+     */
+    public static Frame createFrame(BufferedImage background, int layerCount) {
+        return new Frame(background, layerCount);
+    }
+
+    public double getScale() {
+        return scale;
+    }
+
+    /**
+     * Returns the frame the renderer draws into. Renderer thread only.
+     */
+    public Frame getBackFrame() {
+        return back;
+    }
+
+    /**
+     * Ends the back frame's compositing, publishes it and returns the area of the screen that
+     * changed since the previously published frame. Renderer thread only; the returned rectangle
+     * is reused by the next call.
+     */
+    public Rectangle publish() {
+        // Covers what this frame drew and what this buffer held before, which may be older than
+        // the previously published frame, so add what that one drew as well
+        damage.setBounds(back.compositor.endFrame());
+        LayerCompositor.union(damage, publishedBounds);
+        publishedBounds.setBounds(back.compositor.getDrawnBounds());
+
+        back.fresh = true;
+        back = middle.getAndSet(back);
+        return damage;
+    }
+
+    /**
+     * Releases the graphics of every frame once the renderer has moved on to other buffers. Their
+     * images stay valid, so a presenter still showing one of them is not disturbed.
+     */
+    public void dispose() {
+        for (Frame frame : frames) {
+            frame.graphics.dispose();
+        }
+    }
+
+    /**
+     * Returns the newest published frame. Presenter thread only; the frame stays valid until
+     * the next call.
+     */
+    public Frame acquireFrontFrame() {
+        if (middle.get().fresh) {
+            front.fresh = false;
+            front = middle.getAndSet(front);
+        }
+        return front;
+    }
+}
@@ -0,0 +1,119 @@
+import java.awt.image.BufferedImage;
+
+/**
+ * Compares two ARGB frames pixel by pixel with a per-channel tolerance. The comparison runs over
+ * the raw pixel arrays in one branch-free loop of integer arithmetic, which the JIT compiles to
+ * SIMD instructions where the CPU has them.
+ *
+ * <p>
+ * The largest channel difference of every pixel is kept, so a failed comparison can be turned
+ * into a heatmap without comparing again. A diff may be reused for frames of the same size, but
+ * not shared between threads.
+ */
+public class FrameDiff {
+    private static final int MAX_DIFFERENCE = 255;
+
+    private final int width;
+    private final int height;
+    private final int[] differences; // Largest channel difference of every pixel
+    private int tolerance;
+    private int differingPixels;
+    private int maxDifference;
+
+    public FrameDiff(int width, int height) {
+        if (width <= 0 || height <= 0) {
+            throw new IllegalArgumentException("Frame size must be positive.");
+        }
+
+        this.width = width;
+        this.height = height;
+        this.differences = new int[width * height];
+    }
+
+    /**
+     * Compares two frames of this diff's size.
+     *
+     * @param expected the reference pixels, row by row.
+     * @param actual the pixels to check, row by row.
+     * @param tolerance the largest difference allowed in any channel of a pixel, from 0 to 255.
+     * @return the number of pixels that differ by more than {@code tolerance} in some channel.
+     */
+    public int compare(int[] expected, int[] actual, int tolerance) {
+        int n = width * height;
+        if (expected.length < n || actual.length < n) {
+            throw new IllegalArgumentException("Frames must hold " + n + " pixels.");
+        }
+        if (tolerance < 0 || tolerance > MAX_DIFFERENCE) {
+            throw new IllegalArgumentException("Tolerance must be between 0 and 255.");
+        }
+
+        int[] d = differences;
+        int over = 0;
+        int max = 0;
+        for (int i = 0; i < n; i++) {
+            int e = expected[i];
+            int a = actual[i];
+            int da = Math.abs((e >>> 24) - (a >>> 24));
+            int dr = Math.abs(((e >>> 16) & 0xFF) - ((a >>> 16) & 0xFF));
+            int dg = Math.abs(((e >>> 8) & 0xFF) - ((a >>> 8) & 0xFF));
+            int db = Math.abs((e & 0xFF) - (a & 0xFF));
+            int difference = Math.max(Math.max(da, dr), Math.max(dg, db));
+            d[i] = difference;
+            over += (tolerance - difference) >>> 31; // 1 when over the tolerance
+            max = Math.max(max, difference);
+        }
+
+        this.tolerance = tolerance;
+        this.differingPixels = over;
+        this.maxDifference = max;
+        return over;
+    }
+
+    /**
+     * Compares two images of this diff's size, which must be {@link BufferedImage#TYPE_INT_ARGB}.
+     */
+    public int compare(BufferedImage expected, BufferedImage actual, int tolerance) {
+        return compare(pixelsOf(expected), pixelsOf(actual), tolerance);
+    }
+
+    public int getDifferingPixels() {
+        return differingPixels;
+    }
+
+    public int getMaxDifference() {
+        return maxDifference;
+    }
+
+    /**
+     * Returns a heatmap of the last comparison: the expected frame dimmed to gray where it was
+     * matched within the tolerance, and yellow to red by how far off the rest is.
+     */
+    public BufferedImage heatmap(int[] expected) {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        int[] pixels = SpanRasterizer.pixelsOf(image);
+        for (int i = 0; i < pixels.length; i++) {
+            int difference = differences[i];
+            if (difference <= tolerance) {
+                int e = expected[i];
+                int luma = (((e >>> 16) & 0xFF) * 77 + ((e >>> 8) & 0xFF) * 150 + (e & 0xFF) * 29)
+                        >> 8;
+                int gray = luma / 4;
+                pixels[i] = 0xFF000000 | gray << 16 | gray << 8 | gray;
+            } else {
+                int green = 255 - 255 * (difference - tolerance) / (MAX_DIFFERENCE - tolerance);
+                pixels[i] = 0xFFFF0000 | green << 8;
+            }
+        }
+        return image;
+    }
+
+    private int[] pixelsOf(BufferedImage image) {
+        if (image.getWidth() != width || image.getHeight() != height) {
+            throw new IllegalArgumentException("Frames must be " + width + "x" + height + ".");
+        }
+        if (image.getType() != BufferedImage.TYPE_INT_ARGB) {
+            throw new IllegalArgumentException("Image must be TYPE_INT_ARGB.");
+        }
+        return SpanRasterizer.pixelsOf(image);
+    }
+}
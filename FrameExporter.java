@@ -0,0 +1,147 @@
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.SplittableRandom;
+import javax.imageio.ImageIO;
+
+/**
+ * Renders animation frames as fast as possible, without a window, and writes them as a numbered
+ * PNG sequence, as one raw ARGB file, as a Y4M video or as a looping GIF.
+ *
+ * <pre>
+ * java -Djava.awt.headless=true FrameExporter png|raw|y4m|gif &lt;frames&gt; &lt;output&gt; [seed]
+ * </pre>
+ *
+ * The raw format has no header: each frame is {@code width * height} big-endian ARGB ints, frames
+ * are stored back to back. The Y4M video plays at the speed of the animation and can be converted
+ * with e.g. {@code ffmpeg -i frames.y4m preview.gif}. Passing a seed makes the exported sequence
+ * identical from run to run.
+ */
+public class FrameExporter {
+    public enum Format {
+        PNG, RAW, Y4M, GIF
+    }
+
+    private static final int Y4M_QUEUE_FRAMES = 8;
+
+    private final AnimationPanel panel;
+
+    public FrameExporter() {
+        this.panel = new AnimationPanel(false);
+    }
+
+    public FrameExporter(long seed) {
+        this.panel = new AnimationPanel(false, new SplittableRandom(seed));
+    }
+
+    /**
+     * Writes {@code frameCount} frames as {@code frame_00000.png}, {@code frame_00001.png}, ...
+     * into the given directory, creating it if needed.
+     */
+    public void exportPng(int frameCount, Path directory) throws IOException {
+        Files.createDirectories(directory);
+        for (int i = 0; i < frameCount; i++) {
+            BufferedImage frame = panel.renderNextFrame();
+            File file = directory.resolve(String.format("frame_%05d.png", i)).toFile();
+            if (!ImageIO.write(frame, "png", file)) {
+                throw new IOException("No PNG writer available");
+            }
+        }
+    }
+
+    /**
+     * Writes {@code frameCount} frames into a single raw ARGB file.
+     */
+    public void exportRaw(int frameCount, Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer bytes = null;
+            for (int i = 0; i < frameCount; i++) {
+                BufferedImage frame = panel.renderNextFrame();
+                int[] pixels = ((DataBufferInt) frame.getRaster().getDataBuffer()).getData();
+                if (bytes == null) {
+                    bytes = ByteBuffer.allocateDirect(pixels.length * 4)
+                            .order(ByteOrder.BIG_ENDIAN);
+                }
+
+                bytes.clear();
+                bytes.asIntBuffer().put(pixels);
+                while (bytes.hasRemaining()) {
+                    channel.write(bytes);
+                }
+            }
+        }
+    }
+
+    /**
+     * Writes {@code frameCount} frames into a Y4M video. Frames are encoded and written on a
+     * background thread while the next ones render.
+     */
+    public void exportY4m(int frameCount, Path file) throws IOException {
+        try (Y4mRecorder recorder = new Y4mRecorder(file, getFrameWidth(), getFrameHeight(),
+                panel.getTickRate(), Y4M_QUEUE_FRAMES, Y4mRecorder.OverflowPolicy.BLOCK)) {
+            panel.setRecorder(recorder);
+            for (int i = 0; i < frameCount; i++) {
+                panel.renderNextFrame();
+            }
+        } finally {
+            panel.setRecorder(null);
+        }
+    }
+
+    /**
+     * Writes {@code frameCount} frames into a looping GIF that plays at the speed of the
+     * animation.
+     */
+    public void exportGif(int frameCount, Path file) throws IOException {
+        try (GifEncoder encoder = new GifEncoder(file, panel.getScene(), getFrameWidth(),
+                getFrameHeight(), 1000 / panel.getTickRate())) {
+            for (int i = 0; i < frameCount; i++) {
+                BufferedImage frame = panel.renderNextFrame();
+                encoder.writeFrame(((DataBufferInt) frame.getRaster().getDataBuffer()).getData());
+            }
+        }
+    }
+
+    public int getFrameWidth() {
+        return panel.getWidth();
+    }
+
+    public int getFrameHeight() {
+        return panel.getHeight();
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 3 || args.length > 4) {
+            System.err.println("Usage: FrameExporter png|raw|y4m|gif <frames> <output> [seed]");
+            System.exit(2);
+        }
+
+        Format format = Format.valueOf(args[0].toUpperCase());
+        int frameCount = Integer.parseInt(args[1]);
+        Path output = Paths.get(args[2]);
+
+        FrameExporter exporter = args.length == 4 ? new FrameExporter(Long.parseLong(args[3]))
+                : new FrameExporter();
+        long start = System.nanoTime();
+        switch (format) {
+            case PNG -> exporter.exportPng(frameCount, output);
+            case RAW -> exporter.exportRaw(frameCount, output);
+            case Y4M -> exporter.exportY4m(frameCount, output);
+            case GIF -> exporter.exportGif(frameCount, output);
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        System.out.printf("Wrote %d %dx%d frames to %s in %.2fs (%.1f fps)%n", frameCount,
+                exporter.getFrameWidth(), exporter.getFrameHeight(), output, seconds,
+                frameCount / seconds);
+    }
+}
@@ -0,0 +1,214 @@
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Timings and counters of the frames a panel renders: how long each stage takes, the frame time
+ * distribution, frames per second, dropped frames, skipped simulation ticks and the bytes each
+ * frame allocates. Recording never allocates, so it can stay on in production.
+ *
+ * <p>
+ * The update and render stages and whole frames are recorded by the rendering thread, the paint
+ * stage by the thread presenting frames: the event dispatch thread, or the rendering thread
+ * itself when it renders actively. Any thread may read.
+ */
+public class FrameMetrics implements FrameMetricsMXBean {
+    public enum Stage {
+        UPDATE, RENDER, PAINT
+    }
+
+    private static final long MAX_FRAME_NANOS = TimeUnit.SECONDS.toNanos(10);
+    private static final long FPS_WINDOW_NANOS = TimeUnit.SECONDS.toNanos(1);
+    private static final int STAGES = Stage.values().length;
+
+    // Null when the JVM cannot count allocated bytes per thread
+    private static final com.sun.management.ThreadMXBean THREADS = allocationCounter();
+
+    private final LatencyHistogram frameTimes = new LatencyHistogram(MAX_FRAME_NANOS);
+    private final AtomicLongArray lastStageNanos = new AtomicLongArray(STAGES);
+    private final AtomicLongArray totalStageNanos = new AtomicLongArray(STAGES);
+    private final AtomicLongArray stageCounts = new AtomicLongArray(STAGES);
+    private final AtomicLong droppedFrames = new AtomicLong();
+    private final AtomicLong skippedTicks = new AtomicLong();
+    private final AtomicLong allocationSamples = new AtomicLong();
+    private final AtomicLong totalAllocatedBytes = new AtomicLong();
+    private volatile long lastAllocatedBytes;
+    private volatile double framesPerSecond;
+
+    // Frames per second over the current window, only touched by the rendering thread
+    private long windowStart = -1;
+    private int windowFrames;
+
+    /**
+     * Returns the bytes allocated by the calling thread so far, or -1 if the JVM does not count
+     * them. The difference between two calls is what the thread allocated in between.
+     */
+    public static long currentThreadAllocatedBytes() {
+        return THREADS != null ? THREADS.getCurrentThreadAllocatedBytes() : -1;
+    }
+
+    public void recordStage(Stage stage, long nanos) {
+        int i = stage.ordinal();
+        lastStageNanos.set(i, nanos);
+        totalStageNanos.addAndGet(i, nanos);
+        stageCounts.incrementAndGet(i);
+    }
+
+    /**
+     * Records a finished frame.
+     *
+     * @param startNanos the {@link System#nanoTime()} the frame started at.
+     * @param endNanos the {@link System#nanoTime()} the frame ended at.
+     * @param allocatedBytes the bytes allocated while rendering the frame, or a negative value if
+     *        unknown.
+     */
+    public void recordFrame(long startNanos, long endNanos, long allocatedBytes) {
+        frameTimes.record(endNanos - startNanos);
+        if (allocatedBytes >= 0) {
+            lastAllocatedBytes = allocatedBytes;
+            totalAllocatedBytes.addAndGet(allocatedBytes);
+            allocationSamples.incrementAndGet();
+        }
+
+        if (windowStart < 0) {
+            windowStart = startNanos;
+        }
+        windowFrames++;
+        long elapsed = endNanos - windowStart;
+        if (elapsed >= FPS_WINDOW_NANOS) {
+            framesPerSecond = windowFrames * (double) TimeUnit.SECONDS.toNanos(1) / elapsed;
+            windowStart = endNanos;
+            windowFrames = 0;
+        }
+    }
+
+    public void recordDroppedFrames(long frames) {
+        droppedFrames.addAndGet(frames);
+    }
+
+    public void recordSkippedTicks(long ticks) {
+        skippedTicks.addAndGet(ticks);
+    }
+
+    @Override
+    public double getFramesPerSecond() {
+        return framesPerSecond;
+    }
+
+    @Override
+    public long getFrameCount() {
+        return frameTimes.getTotalCount();
+    }
+
+    @Override
+    public long getDroppedFrames() {
+        return droppedFrames.get();
+    }
+
+    @Override
+    public long getSkippedTicks() {
+        return skippedTicks.get();
+    }
+
+    @Override
+    public double getMeanFrameNanos() {
+        return frameTimes.getMean();
+    }
+
+    @Override
+    public long getFrameNanosP50() {
+        return frameTimes.getValueAtPercentile(50);
+    }
+
+    @Override
+    public long getFrameNanosP90() {
+        return frameTimes.getValueAtPercentile(90);
+    }
+
+    @Override
+    public long getFrameNanosP99() {
+        return frameTimes.getValueAtPercentile(99);
+    }
+
+    @Override
+    public long getFrameNanosP999() {
+        return frameTimes.getValueAtPercentile(99.9);
+    }
+
+    @Override
+    public long getMaxFrameNanos() {
+        return frameTimes.getMax();
+    }
+
+    @Override
+    public long getLastUpdateNanos() {
+        return lastStageNanos.get(Stage.UPDATE.ordinal());
+    }
+
+    @Override
+    public double getMeanUpdateNanos() {
+        return meanStageNanos(Stage.UPDATE);
+    }
+
+    @Override
+    public long getLastRenderNanos() {
+        return lastStageNanos.get(Stage.RENDER.ordinal());
+    }
+
+    @Override
+    public double getMeanRenderNanos() {
+        return meanStageNanos(Stage.RENDER);
+    }
+
+    @Override
+    public long getLastPaintNanos() {
+        return lastStageNanos.get(Stage.PAINT.ordinal());
+    }
+
+    @Override
+    public double getMeanPaintNanos() {
+        return meanStageNanos(Stage.PAINT);
+    }
+
+    @Override
+    public long getLastAllocatedBytes() {
+        return lastAllocatedBytes;
+    }
+
+    @Override
+    public double getMeanAllocatedBytes() {
+        long samples = allocationSamples.get();
+        return samples == 0 ? 0 : (double) totalAllocatedBytes.get() / samples;
+    }
+
+    @Override
+    public void reset() {
+        frameTimes.reset();
+        for (int i = 0; i < STAGES; i++) {
+            lastStageNanos.set(i, 0);
+            totalStageNanos.set(i, 0);
+            stageCounts.set(i, 0);
+        }
+        droppedFrames.set(0);
+        skippedTicks.set(0);
+        allocationSamples.set(0);
+        totalAllocatedBytes.set(0);
+        lastAllocatedBytes = 0;
+        framesPerSecond = 0;
+    }
+
+    private double meanStageNanos(Stage stage) {
+        long count = stageCounts.get(stage.ordinal());
+        return count == 0 ? 0 : (double) totalStageNanos.get(stage.ordinal()) / count;
+    }
+
+    private static com.sun.management.ThreadMXBean allocationCounter() {
+        if (ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean threads
+                && threads.isThreadAllocatedMemorySupported()) {
+            threads.setThreadAllocatedMemoryEnabled(true);
+            return threads;
+        }
+        return null;
+    }
+}
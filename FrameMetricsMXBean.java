@@ -0,0 +1,47 @@
+/**
+ * The management interface of {@link FrameMetrics}, registered with the platform MBean server
+ * while a panel is animating, so JConsole or any JMX client can watch a running animation.
+ * Durations are in nanoseconds.
+ */
+public interface FrameMetricsMXBean {
+    double getFramesPerSecond();
+
+    long getFrameCount();
+
+    long getDroppedFrames();
+
+    long getSkippedTicks();
+
+    double getMeanFrameNanos();
+
+    long getFrameNanosP50();
+
+    long getFrameNanosP90();
+
+    long getFrameNanosP99();
+
+    long getFrameNanosP999();
+
+    long getMaxFrameNanos();
+
+    long getLastUpdateNanos();
+
+    double getMeanUpdateNanos();
+
+    long getLastRenderNanos();
+
+    double getMeanRenderNanos();
+
+    long getLastPaintNanos();
+
+    double getMeanPaintNanos();
+
+    long getLastAllocatedBytes();
+
+    double getMeanAllocatedBytes();
+
+    /**
+     * Clears every counter and timing.
+     */
+    void reset();
+}
@@ -0,0 +1,367 @@
+import java.awt.Color;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.awt.image.IndexColorModel;
+import java.io.Closeable;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Iterator;
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageTypeSpecifier;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.metadata.IIOMetadata;
+import javax.imageio.metadata.IIOMetadataNode;
+import javax.imageio.stream.ImageOutputStream;
+
+/**
+ * Writes frames into a looping animated GIF. All frames share one global palette, built from the
+ * opaque {@link Colors} constants, ramps along the scene's sun gradient, its ocean and the space
+ * background, and a coarse color cube for everything else. Pixels are mapped to it through a precomputed lookup cube,
+ * without dithering, so unchanged areas quantize to unchanged indices.
+ *
+ * <p>
+ * After the first frame only the rectangle that changed since the previous frame is written, and
+ * pixels inside it that did not change are made transparent so they compress to almost nothing.
+ */
+public class GifEncoder implements Closeable {
+    private static final int TRANSPARENT = 0; // Palette index never used for a real color
+    private static final int PALETTE_SIZE = 256;
+    private static final int LOOKUP_BITS = 6; // Bits per channel of the lookup cube
+
+    // The space background of AnimationPanel, which is not part of the scene
+    private static final Color SPACE_DARK = new Color(5, 10, 20);
+    private static final Color SPACE_LIGHT = new Color(10, 20, 40);
+
+    private static final String IMAGE_FORMAT = "javax_imageio_gif_image_1.0";
+    private static final String STREAM_FORMAT = "javax_imageio_gif_stream_1.0";
+
+    private final int width;
+    private final int height;
+    private final int delayCentiseconds;
+    private final ImageOutputStream output;
+    private final ImageWriter writer;
+    private final IndexColorModel palette;
+    private final byte[] lookup;
+    private final ImageTypeSpecifier frameType;
+
+    private byte[] previous; // Palette indices of the last frame, null before the first
+    private byte[] current;
+    private int frameCount = 0;
+
+    /**
+     * Creates the file and writes the GIF header with the palette for the given scene.
+     *
+     * @param file the file to write, replaced if it exists.
+     * @param scene the scene the frames show, whose colors the palette is built around.
+     * @param delayMillis how long each frame is shown, rounded to hundredths of a second.
+     */
+    public GifEncoder(Path file, Scene scene, int width, int height, int delayMillis)
+            throws IOException {
+        if (width <= 0 || height <= 0) {
+            throw new IllegalArgumentException("Frame size must be positive.");
+        }
+
+        Iterator<ImageWriter> writers = ImageIO.getImageWritersByFormatName("gif");
+        if (!writers.hasNext()) {
+            throw new IOException("No GIF writer available");
+        }
+
+        this.width = width;
+        this.height = height;
+        this.delayCentiseconds = Math.max(Math.round(delayMillis / 10f), 1);
+        this.current = new byte[width * height];
+        this.writer = writers.next();
+        this.palette = buildPalette(scene);
+        this.lookup = buildLookup(palette);
+        this.frameType = ImageTypeSpecifier.createFromRenderedImage(
+                new BufferedImage(1, 1, BufferedImage.TYPE_BYTE_INDEXED, palette));
+
+        Files.deleteIfExists(file);
+        this.output = ImageIO.createImageOutputStream(file.toFile());
+        writer.setOutput(output);
+        writer.prepareWriteSequence(createStreamMetadata());
+    }
+
+    public int getFrameCount() {
+        return frameCount;
+    }
+
+    /**
+     * Quantizes the frame to the palette and appends what changed since the last one.
+     *
+     * @param pixels the frame as {@code width * height} ARGB pixels, row by row.
+     */
+    public void writeFrame(int[] pixels) throws IOException {
+        if (pixels.length < width * height) {
+            throw new IllegalArgumentException("Frame must hold " + width * height + " pixels.");
+        }
+
+        for (int i = 0; i < width * height; i++) {
+            current[i] = lookup[lookupIndex(pixels[i])];
+        }
+
+        // Bounds of the pixels that changed; the whole frame the first time
+        int x1 = 0;
+        int y1 = 0;
+        int x2 = width - 1;
+        int y2 = height - 1;
+        if (previous != null) {
+            x1 = width;
+            y1 = height;
+            x2 = -1;
+            y2 = -1;
+            for (int y = 0; y < height; y++) {
+                for (int x = 0, i = y * width; x < width; x++, i++) {
+                    if (current[i] != previous[i]) {
+                        x1 = Math.min(x1, x);
+                        x2 = Math.max(x2, x);
+                        y1 = Math.min(y1, y);
+                        y2 = y;
+                    }
+                }
+            }
+            if (x2 < 0) {
+                x1 = x2 = y1 = y2 = 0; // Nothing changed, but the frame still takes its time
+            }
+        }
+
+        int frameWidth = x2 - x1 + 1;
+        int frameHeight = y2 - y1 + 1;
+        BufferedImage frame = new BufferedImage(frameWidth, frameHeight,
+                BufferedImage.TYPE_BYTE_INDEXED, palette);
+        byte[] indices = ((DataBufferByte) frame.getRaster().getDataBuffer()).getData();
+        for (int y = 0; y < frameHeight; y++) {
+            for (int x = 0; x < frameWidth; x++) {
+                int i = (y1 + y) * width + x1 + x;
+                boolean unchanged = previous != null && current[i] == previous[i];
+                indices[y * frameWidth + x] = unchanged ? (byte) TRANSPARENT : current[i];
+            }
+        }
+
+        writer.writeToSequence(new IIOImage(frame, null, createFrameMetadata(x1, y1, frameWidth,
+                frameHeight)), null);
+        frameCount++;
+
+        // The frame just written becomes the one the next is compared with
+        byte[] swap = previous != null ? previous : new byte[width * height];
+        previous = current;
+        current = swap;
+    }
+
+    /**
+     * Writes the GIF trailer and closes the file.
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            writer.endWriteSequence();
+        } finally {
+            writer.dispose();
+            output.close();
+        }
+    }
+
+    private IIOMetadata createStreamMetadata() throws IOException {
+        IIOMetadata metadata = writer.getDefaultStreamMetadata(null);
+        IIOMetadataNode root = new IIOMetadataNode(STREAM_FORMAT);
+
+        IIOMetadataNode version = new IIOMetadataNode("Version");
+        version.setAttribute("value", "89a");
+        root.appendChild(version);
+
+        IIOMetadataNode screen = new IIOMetadataNode("LogicalScreenDescriptor");
+        screen.setAttribute("logicalScreenWidth", Integer.toString(width));
+        screen.setAttribute("logicalScreenHeight", Integer.toString(height));
+        screen.setAttribute("colorResolution", "8");
+        screen.setAttribute("pixelAspectRatio", "0");
+        root.appendChild(screen);
+
+        IIOMetadataNode table = new IIOMetadataNode("GlobalColorTable");
+        table.setAttribute("sizeOfGlobalColorTable", Integer.toString(PALETTE_SIZE));
+        table.setAttribute("sortFlag", "FALSE");
+        table.setAttribute("backgroundColorIndex", Integer.toString(TRANSPARENT));
+        for (int i = 0; i < PALETTE_SIZE; i++) {
+            IIOMetadataNode entry = new IIOMetadataNode("ColorTableEntry");
+            entry.setAttribute("index", Integer.toString(i));
+            entry.setAttribute("red", Integer.toString(palette.getRed(i)));
+            entry.setAttribute("green", Integer.toString(palette.getGreen(i)));
+            entry.setAttribute("blue", Integer.toString(palette.getBlue(i)));
+            table.appendChild(entry);
+        }
+        root.appendChild(table);
+
+        metadata.setFromTree(STREAM_FORMAT, root);
+        return metadata;
+    }
+
+    private IIOMetadata createFrameMetadata(int x, int y, int frameWidth, int frameHeight)
+            throws IOException {
+        ImageWriteParam param = writer.getDefaultWriteParam();
+        IIOMetadata metadata = writer.getDefaultImageMetadata(frameType, param);
+        IIOMetadataNode root = new IIOMetadataNode(IMAGE_FORMAT);
+
+        IIOMetadataNode descriptor = new IIOMetadataNode("ImageDescriptor");
+        descriptor.setAttribute("imageLeftPosition", Integer.toString(x));
+        descriptor.setAttribute("imageTopPosition", Integer.toString(y));
+        descriptor.setAttribute("imageWidth", Integer.toString(frameWidth));
+        descriptor.setAttribute("imageHeight", Integer.toString(frameHeight));
+        descriptor.setAttribute("interlaceFlag", "FALSE");
+        root.appendChild(descriptor);
+
+        // Keep each frame on screen, so the next one only has to cover what changed
+        IIOMetadataNode control = new IIOMetadataNode("GraphicControlExtension");
+        control.setAttribute("disposalMethod", "doNotDispose");
+        control.setAttribute("userInputFlag", "FALSE");
+        control.setAttribute("transparentColorFlag", previous != null ? "TRUE" : "FALSE");
+        control.setAttribute("delayTime", Integer.toString(delayCentiseconds));
+        control.setAttribute("transparentColorIndex", Integer.toString(TRANSPARENT));
+        root.appendChild(control);
+
+        if (previous == null) {
+            // Loop forever
+            IIOMetadataNode extensions = new IIOMetadataNode("ApplicationExtensions");
+            IIOMetadataNode loop = new IIOMetadataNode("ApplicationExtension");
+            loop.setAttribute("applicationID", "NETSCAPE");
+            loop.setAttribute("authenticationCode", "2.0");
+            loop.setUserObject(new byte[] {1, 0, 0});
+            extensions.appendChild(loop);
+            root.appendChild(extensions);
+        }
+
+        metadata.setFromTree(IMAGE_FORMAT, root);
+        return metadata;
+    }
+
+    private static int lookupIndex(int argb) {
+        int shift = 8 - LOOKUP_BITS;
+        int r = ((argb >> 16) & 0xFF) >> shift;
+        int g = ((argb >> 8) & 0xFF) >> shift;
+        int b = (argb & 0xFF) >> shift;
+        return (r << (2 * LOOKUP_BITS)) | (g << LOOKUP_BITS) | b;
+    }
+
+    /**
+     * Builds the palette: the transparent entry, every opaque color in {@link Colors}, ramps
+     * along the scene's gradients and towards black (for the Earth's shadow), then a color cube.
+     * Colors already in it are not added again.
+     */
+    private static IndexColorModel buildPalette(Scene scene) {
+        int[] rgb = new int[PALETTE_SIZE];
+        int size = 1; // Entry 0 is transparent
+
+        for (Field field : Colors.class.getFields()) {
+            if (field.getType() == Color.class && Modifier.isStatic(field.getModifiers())) {
+                try {
+                    Color color = (Color) field.get(null);
+                    if (color.getAlpha() == 255) {
+                        // Translucent colors are only ever seen blended with what is below
+                        size = add(rgb, size, color.getRGB());
+                        size = addRamp(rgb, size, color, Color.BLACK, 6);
+                    }
+                } catch (IllegalAccessException e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+        }
+
+        // Space background, the sun's gradient and clouds over the ocean
+        size = addRamp(rgb, size, SPACE_DARK, SPACE_LIGHT, 16);
+        Color[] sunlight = scene.getSunGradient().colors;
+        size = add(rgb, size, sunlight[0].getRGB());
+        for (int i = 1; i < sunlight.length; i++) {
+            size = addRamp(rgb, size, sunlight[i - 1], sunlight[i], 10);
+        }
+        size = add(rgb, size, scene.getOceanColor().getRGB());
+        size = addRamp(rgb, size, scene.getOceanColor(), Colors.CLOUD_WHITE, 8);
+        size = addRamp(rgb, size, SPACE_DARK, Color.WHITE, 8);
+
+        // Whatever is left becomes an evenly spaced color cube for everything else
+        int levels = (int) Math.cbrt(PALETTE_SIZE - size);
+        for (int r = 0; r < levels; r++) {
+            for (int g = 0; g < levels; g++) {
+                for (int b = 0; b < levels; b++) {
+                    size = add(rgb, size, (r * 255 / (levels - 1) << 16)
+                            | (g * 255 / (levels - 1) << 8) | b * 255 / (levels - 1));
+                }
+            }
+        }
+
+        byte[] reds = new byte[PALETTE_SIZE];
+        byte[] greens = new byte[PALETTE_SIZE];
+        byte[] blues = new byte[PALETTE_SIZE];
+        for (int i = 0; i < size; i++) {
+            reds[i] = (byte) (rgb[i] >> 16);
+            greens[i] = (byte) (rgb[i] >> 8);
+            blues[i] = (byte) rgb[i];
+        }
+        return new IndexColorModel(8, PALETTE_SIZE, reds, greens, blues, TRANSPARENT);
+    }
+
+    // Adds the colors strictly between from and to, plus to itself
+    private static int addRamp(int[] rgb, int size, Color from, Color to, int steps) {
+        for (int i = 1; i <= steps; i++) {
+            float t = i / (float) steps;
+            int r = Math.round(from.getRed() + (to.getRed() - from.getRed()) * t);
+            int g = Math.round(from.getGreen() + (to.getGreen() - from.getGreen()) * t);
+            int b = Math.round(from.getBlue() + (to.getBlue() - from.getBlue()) * t);
+            size = add(rgb, size, (r << 16) | (g << 8) | b);
+        }
+        return size;
+    }
+
+    // Adds the color unless it is already in the palette or the palette is full
+    private static int add(int[] rgb, int size, int color) {
+        color &= 0xFFFFFF;
+        if (size == PALETTE_SIZE) {
+            return size;
+        }
+        for (int i = 1; i < size; i++) {
+            if (rgb[i] == color) {
+                return size;
+            }
+        }
+        rgb[size] = color;
+        return size + 1;
+    }
+
+    /**
+     * Maps every cell of a 64x64x64 RGB cube to the nearest palette entry, so quantizing a pixel
+     * is a single array read.
+     */
+    private static byte[] buildLookup(IndexColorModel palette) {
+        int cells = 1 << LOOKUP_BITS;
+        int shift = 8 - LOOKUP_BITS;
+        int half = 1 << (shift - 1); // Cell centers
+        byte[] lookup = new byte[cells * cells * cells];
+
+        for (int r = 0; r < cells; r++) {
+            for (int g = 0; g < cells; g++) {
+                for (int b = 0; b < cells; b++) {
+                    int red = (r << shift) + half;
+                    int green = (g << shift) + half;
+                    int blue = (b << shift) + half;
+
+                    int best = 1;
+                    int bestDistance = Integer.MAX_VALUE;
+                    for (int i = 1; i < PALETTE_SIZE; i++) {
+                        int dr = palette.getRed(i) - red;
+                        int dg = palette.getGreen(i) - green;
+                        int db = palette.getBlue(i) - blue;
+                        int distance = 2 * dr * dr + 4 * dg * dg + 3 * db * db; // Eye sensitivity
+                        if (distance < bestDistance) {
+                            best = i;
+                            bestDistance = distance;
+                        }
+                    }
+                    lookup[(r << (2 * LOOKUP_BITS)) | (g << LOOKUP_BITS) | b] = (byte) best;
+                }
+            }
+        }
+        return lookup;
+    }
+}
@@ -0,0 +1,347 @@
+import java.awt.Color;
+import java.awt.geom.Point2D;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Draws a rotating globe by sampling an equirectangular land and ocean texture. The texture is
+ * generated once from the {@link Colors} palette. For every radius, a projection map records
+ * which texel each pixel of the disc shows when the globe is at longitude 0; turning the globe
+ * only shifts the texture column, so a frame is a plain gather from the texture with no
+ * trigonometry per pixel.
+ *
+ * <p>
+ * The globe is tilted towards the viewer like the Earth's axis, so the north pole is in view.
+ * Projection maps are evicted in least-recently-used order once {@code capacity} radii are
+ * cached. Discs with many pixels are drawn on a {@link ForkJoinPool}, a band of rows per task.
+ * A renderer may be shared between threads drawing into pixels of their own.
+ */
+public class GlobeRenderer {
+    /**
+     * Discs with fewer pixels than this are drawn faster on a single thread.
+     */
+    public static final int MIN_PARALLEL_PIXELS = 256 * 256;
+
+    private static final int LONGITUDE_BITS = 9;
+    private static final int TEXTURE_WIDTH = 1 << LONGITUDE_BITS; // Texels around the equator
+    private static final int TEXTURE_HEIGHT = TEXTURE_WIDTH / 2; // Texels from pole to pole
+    private static final int LONGITUDE_MASK = TEXTURE_WIDTH - 1;
+    private static final int OUTSIDE = -1; // Projection map entry of a pixel off the disc
+    private static final double AXIAL_TILT = Math.toRadians(23.4);
+    private static final double TILT_COS = Math.cos(AXIAL_TILT);
+    private static final double TILT_SIN = Math.sin(AXIAL_TILT);
+    private static final int ROWS_PER_TASK = 32; // Below this a task draws its rows itself
+
+    // Shape of the generated terrain
+    private static final int NOISE_OCTAVES = 5;
+    private static final double NOISE_FREQUENCY = 2.0; // Features per globe radius, roughly
+    private static final double SEA_LEVEL = 0.0; // Elevation above which there is land
+    private static final double MOUNTAIN_LEVEL = 0.35;
+    private static final double POLAR_LATITUDE = Math.toRadians(70);
+
+    private final int[] texture;
+    private final Map<Integer, int[]> projections;
+    private final ForkJoinPool pool;
+
+    /**
+     * @param capacity the most radii to keep projection maps for.
+     * @param seed the seed the terrain is generated from. Equal seeds give equal globes.
+     */
+    public GlobeRenderer(int capacity, long seed) {
+        this(capacity, seed, ForkJoinPool.commonPool());
+    }
+
+    public GlobeRenderer(int capacity, long seed, ForkJoinPool pool) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive.");
+        }
+
+        this.texture = generateTexture(seed);
+        this.pool = pool;
+        this.projections = new LinkedHashMap<>(capacity * 2, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, int[]> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    /**
+     * Draws the globe opaquely into an ARGB pixel array, clipped to its bounds.
+     *
+     * @param pixels the target pixels, row by row.
+     * @param width the width of the target.
+     * @param height the height of the target.
+     * @param radius the radius of the globe in pixels. Must be positive.
+     * @param rotation how far the globe has turned eastwards, in radians.
+     */
+    public void draw(int[] pixels, int width, int height, int xCenter, int yCenter, int radius,
+            double rotation) {
+        int[] projection = projectionFor(radius);
+        int size = radius * 2;
+        int left = xCenter - radius;
+        int top = yCenter - radius;
+        int x1 = Math.max(left, 0);
+        int x2 = Math.min(left + size, width);
+        int y1 = Math.max(top, 0);
+        int y2 = Math.min(top + size, height);
+        if (x1 >= x2 || y1 >= y2) {
+            return;
+        }
+
+        // Turning east brings the texture's western columns into view
+        double turns = rotation / (2 * Math.PI);
+        int shift = (int) Math.round((turns - Math.floor(turns)) * TEXTURE_WIDTH);
+        int offset = TEXTURE_WIDTH - shift;
+
+        if ((long) (x2 - x1) * (y2 - y1) >= MIN_PARALLEL_PIXELS) {
+            pool.invoke(new RowTask(pixels, width, projection, size, left, top, x1, x2, offset,
+                    y1, y2));
+        } else {
+            drawRows(pixels, width, projection, size, left, top, x1, x2, offset, y1, y2);
+        }
+    }
+
+    /**
+     * Finds where a point of the globe's surface appears on a disc of radius 1 centered at the
+     * origin, with y pointing down like the disc's pixels.
+     *
+     * @param rotation how far the globe has turned eastwards, in radians.
+     * @param result receives the point on the disc.
+     * @return how far the point faces the viewer, from 1 at the center of the disc to -1 at the
+     *         center of the far side. The point is hidden when this is negative.
+     */
+    public static double locate(double latitude, double longitude, double rotation,
+            Point2D.Double result) {
+        double ring = TrigTable.cos(latitude);
+        double up = TrigTable.sin(latitude);
+        double side = ring * TrigTable.sin(longitude + rotation);
+        double front = ring * TrigTable.cos(longitude + rotation);
+
+        // The inverse of the tilt in project
+        result.setLocation(side, front * TILT_SIN - up * TILT_COS);
+        return up * TILT_SIN + front * TILT_COS;
+    }
+
+    public synchronized int size() {
+        return projections.size();
+    }
+
+    public synchronized void clear() {
+        projections.clear();
+    }
+
+    private void drawRows(int[] pixels, int width, int[] projection, int size, int left,
+            int top, int x1, int x2, int offset, int y1, int y2) {
+        int[] texels = texture;
+        for (int y = y1; y < y2; y++) {
+            int m = (y - top) * size + x1 - left;
+            for (int i = y * width + x1, end = y * width + x2; i < end; i++, m++) {
+                int texel = projection[m];
+                if (texel != OUTSIDE) {
+                    pixels[i] = texels[(texel & ~LONGITUDE_MASK)
+                            | ((texel + offset) & LONGITUDE_MASK)];
+                }
+            }
+        }
+    }
+
+    private synchronized int[] projectionFor(int radius) {
+        int[] projection = projections.get(radius);
+        if (projection == null) {
+            projection = project(radius);
+            projections.put(radius, projection);
+        }
+        return projection;
+    }
+
+    /**
+     * Maps every pixel of a disc of the given radius to the texel it shows at longitude 0, packed
+     * as {@code row << LONGITUDE_BITS | column}, or to {@link #OUTSIDE}.
+     */
+    private static int[] project(int radius) {
+        if (radius <= 0) {
+            throw new IllegalArgumentException("Radius must be positive.");
+        }
+
+        int size = radius * 2;
+        int[] projection = new int[size * size];
+        for (int y = 0, m = 0; y < size; y++) {
+            double ny = (radius - y - 0.5) / radius; // Up is positive
+            for (int x = 0; x < size; x++, m++) {
+                double nx = (x + 0.5 - radius) / radius;
+                double d2 = nx * nx + ny * ny;
+                if (d2 > 1) {
+                    projection[m] = OUTSIDE;
+                    continue;
+                }
+
+                // The point of the sphere facing the viewer, with the north pole leaning in
+                double nz = Math.sqrt(1 - d2);
+                double up = ny * TILT_COS + nz * TILT_SIN;
+                double front = nz * TILT_COS - ny * TILT_SIN;
+                double latitude = Math.asin(Math.max(-1, Math.min(up, 1)));
+                double longitude = Math.atan2(nx, front);
+
+                int row = (int) ((0.5 - latitude / Math.PI) * TEXTURE_HEIGHT);
+                int column = (int) Math.floor((longitude / (2 * Math.PI) + 0.5) * TEXTURE_WIDTH);
+                projection[m] = Math.min(row, TEXTURE_HEIGHT - 1) << LONGITUDE_BITS
+                        | (column & LONGITUDE_MASK);
+            }
+        }
+        return projection;
+    }
+
+    /**
+     * Generates the equirectangular texture: fractal noise sampled on the sphere, so it wraps
+     * around in longitude without a seam, read as elevation and moisture.
+     */
+    private static int[] generateTexture(long seed) {
+        SplittableRandom random = new SplittableRandom(seed);
+        long elevationSeed = random.nextLong();
+        long moistureSeed = random.nextLong();
+
+        int deepOcean = mix(Colors.OCEAN_BLUE, Colors.DEEP_OCEAN_BLUE, 0.3);
+        int shallowOcean = mix(Colors.OCEAN_BLUE, Colors.SHALLOW_OCEAN_BLUE, 0.25);
+        int ocean = Colors.OCEAN_BLUE.getRGB();
+        int forest = Colors.FOREST_GREEN.getRGB();
+        int desert = Colors.DESERT_BROWN.getRGB();
+        int mountain = Colors.MOUNTAIN_GRAY.getRGB();
+        int ice = Colors.CLOUD_WHITE.getRGB();
+
+        int[] texels = new int[TEXTURE_WIDTH * TEXTURE_HEIGHT];
+        for (int row = 0, t = 0; row < TEXTURE_HEIGHT; row++) {
+            double latitude = (0.5 - (row + 0.5) / TEXTURE_HEIGHT) * Math.PI;
+            double ringRadius = Math.cos(latitude);
+            double z = Math.sin(latitude);
+            for (int column = 0; column < TEXTURE_WIDTH; column++, t++) {
+                double longitude = ((column + 0.5) / TEXTURE_WIDTH - 0.5) * 2 * Math.PI;
+                double x = ringRadius * Math.sin(longitude);
+                double y = ringRadius * Math.cos(longitude);
+
+                double elevation = fractalNoise(elevationSeed, x, y, z);
+                double moisture = fractalNoise(moistureSeed, x, y, z);
+                double polar = Math.abs(latitude) + 0.3 * moisture; // Ragged ice edges
+                if (polar > POLAR_LATITUDE) {
+                    texels[t] = ice;
+                } else if (elevation < SEA_LEVEL - 0.3) {
+                    texels[t] = deepOcean;
+                } else if (elevation < SEA_LEVEL - 0.04) {
+                    texels[t] = ocean;
+                } else if (elevation < SEA_LEVEL) {
+                    texels[t] = shallowOcean;
+                } else if (elevation > MOUNTAIN_LEVEL) {
+                    texels[t] = mountain;
+                } else if (moisture < -0.1 && Math.abs(latitude) < Math.toRadians(40)) {
+                    texels[t] = desert; // Dry land in the subtropics
+                } else {
+                    texels[t] = forest;
+                }
+            }
+        }
+        return texels;
+    }
+
+    private static double fractalNoise(long seed, double x, double y, double z) {
+        double sum = 0;
+        double amplitude = 0.5;
+        double frequency = NOISE_FREQUENCY;
+        for (int octave = 0; octave < NOISE_OCTAVES; octave++) {
+            sum += amplitude * valueNoise(seed + octave, x * frequency, y * frequency,
+                    z * frequency);
+            amplitude *= 0.5;
+            frequency *= 2;
+        }
+        return sum;
+    }
+
+    /**
+     * Returns smoothly interpolated random values in [-1, 1) between the points of an integer
+     * lattice.
+     */
+    private static double valueNoise(long seed, double x, double y, double z) {
+        int x0 = (int) Math.floor(x);
+        int y0 = (int) Math.floor(y);
+        int z0 = (int) Math.floor(z);
+        double fx = smooth(x - x0);
+        double fy = smooth(y - y0);
+        double fz = smooth(z - z0);
+
+        double c00 = lerp(lattice(seed, x0, y0, z0), lattice(seed, x0 + 1, y0, z0), fx);
+        double c10 = lerp(lattice(seed, x0, y0 + 1, z0), lattice(seed, x0 + 1, y0 + 1, z0), fx);
+        double c01 = lerp(lattice(seed, x0, y0, z0 + 1), lattice(seed, x0 + 1, y0, z0 + 1), fx);
+        double c11 = lerp(lattice(seed, x0, y0 + 1, z0 + 1),
+                lattice(seed, x0 + 1, y0 + 1, z0 + 1), fx);
+        return lerp(lerp(c00, c10, fy), lerp(c01, c11, fy), fz);
+    }
+
+    private static double lattice(long seed, int x, int y, int z) {
+        long h = seed ^ (x * 0x9E3779B97F4A7C15L) ^ (y * 0xC2B2AE3D27D4EB4FL)
+                ^ (z * 0x165667B19E3779F9L);
+        h = (h ^ (h >>> 30)) * 0xBF58476D1CE4E5B9L; // SplitMix64 finalizer
+        h = (h ^ (h >>> 27)) * 0x94D049BB133111EBL;
+        h ^= h >>> 31;
+        return (h >>> 11) * 0x1.0p-52 - 1; // 53 random bits scaled to [-1, 1)
+    }
+
+    private static double smooth(double t) {
+        return t * t * (3 - 2 * t);
+    }
+
+    private static double lerp(double a, double b, double t) {
+        return a + (b - a) * t;
+    }
+
+    private static int mix(Color from, Color to, double amount) {
+        int r = (int) Math.round(from.getRed() + (to.getRed() - from.getRed()) * amount);
+        int g = (int) Math.round(from.getGreen() + (to.getGreen() - from.getGreen()) * amount);
+        int b = (int) Math.round(from.getBlue() + (to.getBlue() - from.getBlue()) * amount);
+        return 0xFF000000 | r << 16 | g << 8 | b;
+    }
+
+    private final class RowTask extends RecursiveAction {
+        private final int[] pixels;
+        private final int width;
+        private final int[] projection;
+        private final int size;
+        private final int left;
+        private final int top;
+        private final int x1;
+        private final int x2;
+        private final int offset;
+        private final int y1;
+        private final int y2;
+
+        RowTask(int[] pixels, int width, int[] projection, int size, int left, int top, int x1,
+                int x2, int offset, int y1, int y2) {
+            this.pixels = pixels;
+            this.width = width;
+            this.projection = projection;
+            this.size = size;
+            this.left = left;
+            this.top = top;
+            this.x1 = x1;
+            this.x2 = x2;
+            this.offset = offset;
+            this.y1 = y1;
+            this.y2 = y2;
+        }
+
+        @Override
+        protected void compute() {
+            if (y2 - y1 > ROWS_PER_TASK) {
+                int middle = (y1 + y2) >>> 1;
+                invokeAll(new RowTask(pixels, width, projection, size, left, top, x1, x2, offset,
+                        y1, middle),
+                        new RowTask(pixels, width, projection, size, left, top, x1, x2, offset,
+                                middle, y2));
+                return;
+            }
+
+            drawRows(pixels, width, projection, size, left, top, x1, x2, offset, y1, y2);
+        }
+    }
+}
@@ -0,0 +1,348 @@
+import java.awt.AlphaComposite;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import javax.imageio.ImageIO;
+
+/**
+ * Renders every frame of one grow-and-explode cycle from a fixed seed, without a window, and
+ * either records them as golden PNGs or checks them against the recorded ones.
+ *
+ * <pre>
+ * java -Djava.awt.headless=true GoldenImages record|check &lt;directory&gt; [seed] [tolerance]
+ * java -Djava.awt.headless=true GoldenImages shapes &lt;directory&gt; [largest radius]
+ * </pre>
+ *
+ * The cycle is split into runs of consecutive frames, one per worker thread. Every worker renders
+ * on a panel of its own, skipping the ticks before its run without rendering them, so the frames
+ * come out the same as from one sequential run. A check passes when no channel of any pixel is
+ * off by more than the tolerance; for every frame that fails, a heatmap of the differences is
+ * written next to the golden frame.
+ *
+ * <p>
+ * Antialiased edges are rasterized differently by different JDKs, so golden frames should be
+ * recorded and checked with the same one.
+ *
+ * <p>
+ * The shapes mode records nothing: it checks that {@link SpanRasterizer} fills every circle and
+ * ellipse up to a radius with exactly the pixels of {@link AnimationPanel#drawMidpointCircle} and
+ * {@link AnimationPanel#drawMidpointEllipse}, which the frames once drew them with.
+ */
+public class GoldenImages {
+    public enum Mode {
+        RECORD, CHECK, SHAPES
+    }
+
+    public static final long DEFAULT_SEED = 42;
+    public static final int DEFAULT_TOLERANCE = 2;
+    public static final int DEFAULT_LARGEST_RADIUS = 120; // Past the pulsing sun
+
+    /**
+     * A frame that differed from its golden frame by more than the tolerance.
+     */
+    public static final class Mismatch {
+        public final int frame;
+        public final int characterAge;
+        public final int differingPixels;
+        public final int maxDifference;
+        public final Path heatmap;
+
+        private Mismatch(int frame, int characterAge, int differingPixels, int maxDifference,
+                Path heatmap) {
+            this.frame = frame;
+            this.characterAge = characterAge;
+            this.differingPixels = differingPixels;
+            this.maxDifference = maxDifference;
+            this.heatmap = heatmap;
+        }
+    }
+
+    @FunctionalInterface
+    private interface FramePass {
+        /**
+         * Handles a frame of the cycle, and returns a mismatch or null. Called by the worker
+         * that rendered the frame, with that worker's diff.
+         */
+        Mismatch accept(int frame, int characterAge, BufferedImage image, FrameDiff diff)
+                throws IOException;
+    }
+
+    private final long seed;
+    private final int threads;
+
+    public GoldenImages(long seed) {
+        this(seed, Runtime.getRuntime().availableProcessors());
+    }
+
+    public GoldenImages(long seed, int threads) {
+        if (threads <= 0) {
+            throw new IllegalArgumentException("Thread count must be positive.");
+        }
+
+        this.seed = seed;
+        this.threads = threads;
+    }
+
+    /**
+     * Writes every frame of the cycle as {@code frame_00000.png}, {@code frame_00001.png}, ...
+     * into the given directory, creating it if needed.
+     *
+     * @return the number of frames written.
+     */
+    public int record(Path directory) throws IOException {
+        Files.createDirectories(directory);
+        return renderCycle((frame, age, image, diff) -> {
+            write(image, framePath(directory, frame));
+            return null;
+        }).frameCount;
+    }
+
+    /**
+     * Renders every frame of the cycle and compares it with the golden frame in the given
+     * directory, writing {@code diff_00000.png}, ... for the frames that differ.
+     *
+     * @param tolerance the largest difference allowed in any channel of a pixel.
+     * @return the frames that differ, in order.
+     * @throws IOException if a golden frame is missing or has another size.
+     */
+    public List<Mismatch> check(Path directory, int tolerance) throws IOException {
+        return renderCycle((frame, age, image, diff) -> {
+            BufferedImage golden = read(framePath(directory, frame));
+            if (golden.getWidth() != image.getWidth() || golden.getHeight() != image.getHeight()) {
+                throw new IOException("Golden frame " + frame + " is " + golden.getWidth() + "x"
+                        + golden.getHeight() + ", not " + image.getWidth() + "x"
+                        + image.getHeight() + ".");
+            }
+            Path heatmap = directory.resolve(String.format("diff_%05d.png", frame));
+            if (diff.compare(golden, image, tolerance) == 0) {
+                Files.deleteIfExists(heatmap); // Left over from an earlier check
+                return null;
+            }
+
+            write(diff.heatmap(SpanRasterizer.pixelsOf(golden)), heatmap);
+            return new Mismatch(frame, age, diff.getDifferingPixels(), diff.getMaxDifference(),
+                    heatmap);
+        }).mismatches;
+    }
+
+    /**
+     * Fills every circle with a radius up to {@code largestRadius}, and every ellipse with both
+     * axes up to it, with {@link SpanRasterizer} and with the midpoint methods of
+     * {@link AnimationPanel} through Java2D, and compares them pixel for pixel. The ellipse with
+     * both axes 0 is left out, as the midpoint method never finishes it. For every shape that
+     * differs, a heatmap {@code circle_<radius>.png} or {@code ellipse_<a>x<b>.png} is written
+     * into the given directory.
+     *
+     * @return the heatmaps written, one per differing shape, in order.
+     */
+    public static List<Path> checkShapes(Path directory, int largestRadius) throws IOException {
+        if (largestRadius < 0) {
+            throw new IllegalArgumentException("Radius cannot be negative.");
+        }
+
+        int size = 2 * largestRadius + 3; // One pixel of margin, to catch spans that overshoot
+        int center = largestRadius + 1;
+        BufferedImage expected = new BufferedImage(size, size, BufferedImage.TYPE_INT_ARGB);
+        BufferedImage actual = new BufferedImage(size, size, BufferedImage.TYPE_INT_ARGB);
+        int[] expectedPixels = SpanRasterizer.pixelsOf(expected);
+        int[] actualPixels = SpanRasterizer.pixelsOf(actual);
+        SpanRasterizer rasterizer = new SpanRasterizer(actual);
+        SpanRasterizer.SpanPaint white = SpanRasterizer.solid(Color.WHITE);
+        FrameDiff diff = new FrameDiff(size, size);
+
+        List<Path> heatmaps = new ArrayList<>();
+        Files.createDirectories(directory);
+        for (int a = 0; a <= largestRadius; a++) {
+            for (int b = -1; b <= largestRadius; b++) {
+                if (a == 0 && b == 0) {
+                    continue;
+                }
+                // The circle of radius a first, then every ellipse with a semi-major axis of a
+                Arrays.fill(expectedPixels, 0);
+                Arrays.fill(actualPixels, 0);
+                Graphics2D g2d = expected.createGraphics();
+                g2d.setColor(Color.WHITE);
+                if (b < 0) {
+                    AnimationPanel.drawMidpointCircle(g2d, center, center, a, true);
+                    rasterizer.fillCircle(center, center, a, white);
+                } else {
+                    AnimationPanel.drawMidpointEllipse(g2d, center, center, a, b, true);
+                    rasterizer.fillEllipse(center, center, a, b, white);
+                }
+                g2d.dispose();
+
+                if (diff.compare(expectedPixels, actualPixels, 0) != 0) {
+                    Path heatmap = directory.resolve(b < 0 ? String.format("circle_%03d.png", a)
+                            : String.format("ellipse_%03dx%03d.png", a, b));
+                    write(diff.heatmap(expectedPixels), heatmap);
+                    heatmaps.add(heatmap);
+                }
+            }
+        }
+        return heatmaps;
+    }
+
+    private static final class CycleResult {
+        final int frameCount;
+        final List<Mismatch> mismatches;
+
+        CycleResult(int frameCount, List<Mismatch> mismatches) {
+            this.frameCount = frameCount;
+            this.mismatches = mismatches;
+        }
+    }
+
+    private CycleResult renderCycle(FramePass pass) throws IOException {
+        int frameCount = AnimationPanel.getCycleTicks();
+        int workers = Math.min(threads, frameCount);
+        int runLength = (frameCount + workers - 1) / workers;
+
+        ExecutorService executor = Executors.newFixedThreadPool(workers);
+        try {
+            List<Callable<List<Mismatch>>> runs = new ArrayList<>();
+            for (int from = 0; from < frameCount; from += runLength) {
+                int start = from;
+                int end = Math.min(from + runLength, frameCount);
+                runs.add(() -> renderRun(start, end, pass));
+            }
+
+            List<Mismatch> mismatches = new ArrayList<>();
+            for (Future<List<Mismatch>> run : executor.invokeAll(runs)) {
+                mismatches.addAll(run.get());
+            }
+            mismatches.sort(Comparator.comparingInt(m -> m.frame));
+            return new CycleResult(frameCount, mismatches);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while rendering", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException cause) {
+                throw cause;
+            }
+            throw new IllegalStateException("Rendering a frame failed", e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Renders frames {@code from} to {@code to} (exclusive) of the cycle on a panel of its own.
+     */
+    private List<Mismatch> renderRun(int from, int to, FramePass pass) throws IOException {
+        AnimationPanel panel = new AnimationPanel(false, new SplittableRandom(seed));
+        panel.skipTicks(from);
+        FrameDiff diff = new FrameDiff(panel.getWidth(), panel.getHeight());
+
+        List<Mismatch> mismatches = new ArrayList<>();
+        for (int frame = from; frame < to; frame++) {
+            BufferedImage image = panel.renderNextFrame();
+            Mismatch mismatch = pass.accept(frame, panel.getCharacterAge(), image, diff);
+            if (mismatch != null) {
+                mismatches.add(mismatch);
+            }
+        }
+        return mismatches;
+    }
+
+    private static Path framePath(Path directory, int frame) {
+        return directory.resolve(String.format("frame_%05d.png", frame));
+    }
+
+    private static void write(BufferedImage image, Path file) throws IOException {
+        if (!ImageIO.write(image, "png", file.toFile())) {
+            throw new IOException("No PNG writer available");
+        }
+    }
+
+    /**
+     * Reads a PNG into a {@link BufferedImage#TYPE_INT_ARGB} image, whatever its stored layout.
+     */
+    private static BufferedImage read(Path file) throws IOException {
+        File input = file.toFile();
+        if (!input.isFile()) {
+            throw new IOException("No golden frame " + file + "; record the frames first.");
+        }
+        BufferedImage stored = ImageIO.read(input);
+        if (stored == null) {
+            throw new IOException("Not an image: " + file);
+        }
+
+        BufferedImage image = new BufferedImage(stored.getWidth(), stored.getHeight(),
+                BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g2d = image.createGraphics();
+        g2d.setComposite(AlphaComposite.Src);
+        g2d.drawImage(stored, 0, 0, null);
+        g2d.dispose();
+        return image;
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2 || args.length > 4) {
+            System.err.println(
+                    "Usage: GoldenImages record|check <directory> [seed] [tolerance]");
+            System.err.println("       GoldenImages shapes <directory> [largest radius]");
+            System.exit(2);
+        }
+
+        Mode mode = Mode.valueOf(args[0].toUpperCase());
+        Path directory = Paths.get(args[1]);
+        if (mode == Mode.SHAPES) {
+            int largestRadius =
+                    args.length >= 3 ? Integer.parseInt(args[2]) : DEFAULT_LARGEST_RADIUS;
+            long start = System.nanoTime();
+            List<Path> heatmaps = checkShapes(directory, largestRadius);
+            for (Path heatmap : heatmaps) {
+                System.out.println("Differs from the midpoint method, see " + heatmap);
+            }
+            System.out.printf("%s: %d shapes up to radius %d differ in %.2fs%n",
+                    heatmaps.isEmpty() ? "Passed" : "Failed", heatmaps.size(), largestRadius,
+                    (System.nanoTime() - start) / 1e9);
+            if (!heatmaps.isEmpty()) {
+                System.exit(1);
+            }
+            return;
+        }
+        long seed = args.length >= 3 ? Long.parseLong(args[2]) : DEFAULT_SEED;
+        int tolerance = args.length == 4 ? Integer.parseInt(args[3]) : DEFAULT_TOLERANCE;
+
+        GoldenImages golden = new GoldenImages(seed);
+        long start = System.nanoTime();
+        switch (mode) {
+            case RECORD -> {
+                int frameCount = golden.record(directory);
+                System.out.printf("Recorded %d golden frames into %s in %.2fs%n", frameCount,
+                        directory, (System.nanoTime() - start) / 1e9);
+            }
+            case CHECK -> {
+                List<Mismatch> mismatches = golden.check(directory, tolerance);
+                for (Mismatch m : mismatches) {
+                    System.out.printf("Frame %d (age %d): %d pixels off by up to %d, see %s%n",
+                            m.frame, m.characterAge, m.differingPixels, m.maxDifference,
+                            m.heatmap);
+                }
+                System.out.printf("%s: %d frames differ by more than %d in %.2fs%n",
+                        mismatches.isEmpty() ? "Passed" : "Failed", mismatches.size(),
+                        tolerance, (System.nanoTime() - start) / 1e9);
+                if (!mismatches.isEmpty()) {
+                    System.exit(1);
+                }
+            }
+            case SHAPES -> throw new AssertionError(); // Handled above
+        }
+    }
+}
@@ -0,0 +1,115 @@
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A fixed-size histogram of latencies in nanoseconds with logarithmic buckets, in the style of
+ * HdrHistogram. Values below 128 get a bucket each; above that, every power of two is split into
+ * 64 linear buckets, so any recorded value is known to within about 1.5%. Recording is a couple
+ * of shifts and an atomic increment, and never allocates.
+ *
+ * <p>
+ * Meant for one recording thread and any number of reading threads. Readers see a recent state,
+ * but a percentile computed while values are being recorded may mix two states.
+ */
+public class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 7;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int HALF_SUB_BUCKETS = SUB_BUCKETS / 2;
+
+    private final long highestTrackableValue;
+    private final AtomicLongArray counts;
+    private final AtomicLong totalCount = new AtomicLong();
+    private final AtomicLong totalValue = new AtomicLong();
+    private final AtomicLong maxValue = new AtomicLong();
+
+    /**
+     * @param highestTrackableValue the largest value told apart from others. Larger values are
+     *        recorded as this one.
+     */
+    public LatencyHistogram(long highestTrackableValue) {
+        if (highestTrackableValue < SUB_BUCKETS) {
+            throw new IllegalArgumentException(
+                    "Highest trackable value must be at least " + SUB_BUCKETS + ".");
+        }
+
+        this.highestTrackableValue = highestTrackableValue;
+        this.counts = new AtomicLongArray(bucketIndex(highestTrackableValue) + 1);
+    }
+
+    public void record(long value) {
+        long clamped = Math.max(0, Math.min(value, highestTrackableValue));
+        counts.incrementAndGet(bucketIndex(clamped));
+        totalCount.incrementAndGet();
+        totalValue.addAndGet(clamped);
+        maxValue.accumulateAndGet(clamped, Math::max);
+    }
+
+    public long getTotalCount() {
+        return totalCount.get();
+    }
+
+    public long getMax() {
+        return maxValue.get();
+    }
+
+    public double getMean() {
+        long count = totalCount.get();
+        return count == 0 ? 0 : (double) totalValue.get() / count;
+    }
+
+    /**
+     * Returns the value that {@code percentile} percent of all recorded values are at or below,
+     * rounded up to the end of its bucket. Returns 0 when nothing has been recorded.
+     *
+     * @param percentile the percentile, from 0 to 100.
+     */
+    public long getValueAtPercentile(double percentile) {
+        long count = totalCount.get();
+        if (count == 0) {
+            return 0;
+        }
+
+        long target = Math.max((long) Math.ceil(count * Math.min(percentile, 100) / 100), 1);
+        long seen = 0;
+        for (int i = 0; i < counts.length(); i++) {
+            seen += counts.get(i);
+            if (seen >= target) {
+                return Math.min(highestValueInBucket(i), maxValue.get());
+            }
+        }
+        return maxValue.get();
+    }
+
+    /**
+     * Forgets every recorded value. Values recorded concurrently may be partly lost.
+     */
+    public void reset() {
+        for (int i = 0; i < counts.length(); i++) {
+            counts.set(i, 0);
+        }
+        totalCount.set(0);
+        totalValue.set(0);
+        maxValue.set(0);
+    }
+
+    private static int bucketIndex(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+
+        // Shift the value down until it fits the upper half of the sub-buckets
+        int shift = 63 - Long.numberOfLeadingZeros(value) - (SUB_BUCKET_BITS - 1);
+        return SUB_BUCKETS + (shift - 1) * HALF_SUB_BUCKETS
+                + (int) (value >>> shift) - HALF_SUB_BUCKETS;
+    }
+
+    private static long highestValueInBucket(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+
+        int shift = (index - SUB_BUCKETS) / HALF_SUB_BUCKETS + 1;
+        long subBucket = (index - SUB_BUCKETS) % HALF_SUB_BUCKETS + HALF_SUB_BUCKETS;
+        return ((subBucket + 1) << shift) - 1;
+    }
+}
@@ -0,0 +1,166 @@
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+
+/**
+ * Composites moving layers over a cached, static background layer. Each frame only the areas the
+ * layers covered in the previous frame are restored from the background, instead of clearing and
+ * refilling the whole target.
+ *
+ * <p>
+ * A frame looks like this:
+ *
+ * <pre>
+ * compositor.beginFrame();              // Restore the background under last frame's layers
+ * compositor.setBounds(SUN, x, y, w, h); // Report where each layer draws this frame
+ * ...draw the layers...
+ * Rectangle damage = compositor.endFrame(); // Everything that changed since the last frame
+ * </pre>
+ */
+public class LayerCompositor {
+    private final int[] targetPixels;
+    private final int[] backgroundPixels;
+    private final int width;
+    private final int height;
+
+    private final Rectangle[] previousBounds;
+    private final Rectangle[] currentBounds;
+    private final Rectangle damage = new Rectangle();
+    private final Rectangle drawnBounds = new Rectangle();
+    private boolean fullyDamaged = true; // The first frame starts from an empty target
+
+    /**
+     * @param target the image the layers are drawn into.
+     * @param background the static background, the same size and type as {@code target}.
+     * @param layerCount the number of moving layers.
+     */
+    public LayerCompositor(BufferedImage target, BufferedImage background, int layerCount) {
+        if (target.getType() != BufferedImage.TYPE_INT_ARGB
+                || background.getType() != BufferedImage.TYPE_INT_ARGB) {
+            throw new IllegalArgumentException("Images must be TYPE_INT_ARGB.");
+        }
+        if (target.getWidth() != background.getWidth()
+                || target.getHeight() != background.getHeight()) {
+            throw new IllegalArgumentException("Background must match the target size.");
+        }
+
+        this.targetPixels = ((DataBufferInt) target.getRaster().getDataBuffer()).getData();
+        this.backgroundPixels =
+                ((DataBufferInt) background.getRaster().getDataBuffer()).getData();
+        this.width = target.getWidth();
+        this.height = target.getHeight();
+
+        this.previousBounds = new Rectangle[layerCount];
+        this.currentBounds = new Rectangle[layerCount];
+        for (int i = 0; i < layerCount; i++) {
+            previousBounds[i] = new Rectangle();
+            currentBounds[i] = new Rectangle();
+        }
+    }
+
+    /**
+     * Forces the next frame to restore and report the whole target, e.g. after the background
+     * changed.
+     */
+    public void invalidateAll() {
+        fullyDamaged = true;
+    }
+
+    /**
+     * Restores the background wherever a layer was drawn in the previous frame.
+     */
+    public void beginFrame() {
+        if (fullyDamaged) {
+            System.arraycopy(backgroundPixels, 0, targetPixels, 0, targetPixels.length);
+            return;
+        }
+
+        for (Rectangle bounds : previousBounds) {
+            restore(bounds);
+        }
+    }
+
+    /**
+     * Records the area a layer covers in the current frame. Layers that draw nothing should pass
+     * an empty rectangle.
+     */
+    public void setBounds(int layer, int x, int y, int w, int h) {
+        currentBounds[layer].setBounds(x, y, w, h);
+    }
+
+    /**
+     * Finishes the frame and returns the area that differs from the previous frame. The returned
+     * rectangle is reused by the next call.
+     */
+    public Rectangle endFrame() {
+        if (fullyDamaged) {
+            damage.setBounds(0, 0, width, height);
+            fullyDamaged = false;
+        } else {
+            damage.setBounds(0, 0, 0, 0);
+            for (int i = 0; i < currentBounds.length; i++) {
+                union(damage, previousBounds[i]);
+                union(damage, currentBounds[i]);
+            }
+            clip(damage);
+        }
+
+        drawnBounds.setBounds(0, 0, 0, 0);
+        for (int i = 0; i < currentBounds.length; i++) {
+            union(drawnBounds, currentBounds[i]);
+        }
+        clip(drawnBounds);
+
+        for (int i = 0; i < currentBounds.length; i++) {
+            previousBounds[i].setBounds(currentBounds[i]);
+            currentBounds[i].setBounds(0, 0, 0, 0);
+        }
+        return damage;
+    }
+
+    /**
+     * Returns the union of the layer bounds of the frame that {@link #endFrame()} just finished.
+     * The returned rectangle is reused by the next call to {@link #endFrame()}.
+     */
+    public Rectangle getDrawnBounds() {
+        return drawnBounds;
+    }
+
+    /**
+     * Grows {@code into} to contain {@code bounds}. Unlike {@link Rectangle#add(Rectangle)},
+     * empty rectangles are ignored instead of being treated as points.
+     */
+    public static void union(Rectangle into, Rectangle bounds) {
+        if (bounds.isEmpty()) {
+            return;
+        }
+        if (into.isEmpty()) {
+            into.setBounds(bounds);
+        } else {
+            into.add(bounds);
+        }
+    }
+
+    private void clip(Rectangle bounds) {
+        int x1 = Math.max(bounds.x, 0);
+        int y1 = Math.max(bounds.y, 0);
+        int x2 = Math.min(bounds.x + bounds.width, width);
+        int y2 = Math.min(bounds.y + bounds.height, height);
+        bounds.setBounds(x1, y1, Math.max(x2 - x1, 0), Math.max(y2 - y1, 0));
+    }
+
+    private void restore(Rectangle bounds) {
+        int x1 = Math.max(bounds.x, 0);
+        int y1 = Math.max(bounds.y, 0);
+        int x2 = Math.min(bounds.x + bounds.width, width);
+        int y2 = Math.min(bounds.y + bounds.height, height);
+        if (x1 >= x2 || y1 >= y2) {
+            return;
+        }
+
+        for (int y = y1; y < y2; y++) {
+            int offset = y * width + x1;
+            System.arraycopy(backgroundPixels, offset, targetPixels, offset, x2 - x1);
+        }
+    }
+}
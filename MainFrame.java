@@ -2,11 +2,11 @@ import javax.swing.JFrame;
 
 public class MainFrame extends JFrame {
     public MainFrame() {
-        this.setSize(600, 600); // Set window size to 600x600
         this.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
         this.add(new AnimationPanel());
+        this.pack(); // Fit the panel's preferred size; the animation follows any later resize
+        this.setResizable(true);
         this.setVisible(true);
-        this.setResizable(false);
         this.setLocationRelativeTo(null);
         this.setTitle("From Babies to ... | By 65050437");
 
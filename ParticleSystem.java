@@ -0,0 +1,251 @@
+import java.awt.Rectangle;
+import java.util.random.RandomGenerator;
+
+/**
+ * A fixed-capacity pool of particles kept in parallel primitive arrays. Particles are spawned in
+ * batches, keep their position and velocity from tick to tick, slow down, shrink and fade until
+ * their life runs out, and are then recycled by swapping the last live particle into their slot.
+ * Nothing is allocated after construction.
+ *
+ * <p>
+ * Particles are drawn as small discs straight into an ARGB pixel array, with colors from a palette
+ * picked once up front.
+ */
+public class ParticleSystem {
+    public static final int MAX_SIZE = 20;
+    private static final int MAX_DRAWN_SIZE = 127; // Largest disc after scaling
+    private static final int PALETTE_SIZE = 64;
+    private static final int ALPHA = 150; // Semi-transparent
+    private static final float DRAG = 0.97f;
+
+    // Span of every row of a disc of each diameter, relative to its top-left corner
+    private static final int[][] DISC_STARTS = new int[MAX_DRAWN_SIZE + 1][];
+    private static final int[][] DISC_LENGTHS = new int[MAX_DRAWN_SIZE + 1][];
+
+    static {
+        for (int d = 1; d <= MAX_DRAWN_SIZE; d++) {
+            DISC_STARTS[d] = new int[d];
+            DISC_LENGTHS[d] = new int[d];
+            double r = d / 2.0;
+            for (int row = 0; row < d; row++) {
+                double dy = row + 0.5 - r;
+                int halfWidth = (int) Math.round(Math.sqrt(Math.max(r * r - dy * dy, 0)));
+                DISC_STARTS[d][row] = (int) r - halfWidth;
+                DISC_LENGTHS[d][row] = Math.max(halfWidth * 2, 1);
+            }
+        }
+    }
+
+    private final RandomGenerator random;
+    private final int capacity;
+    private final int minSize;
+    private final int maxSize;
+    private final int[] palette = new int[PALETTE_SIZE]; // RGB without alpha
+
+    private final float[] x;
+    private final float[] y;
+    private final float[] vx;
+    private final float[] vy;
+    private final int[] life;
+    private final int[] maxLife;
+    private final byte[] size;
+    private final byte[] color;
+    private int count;
+
+    private final Rectangle bounds = new Rectangle();
+
+    /**
+     * Creates an empty pool.
+     *
+     * @param capacity the most particles alive at once.
+     * @param maxSize the diameter of the largest particles, at most {@link #MAX_SIZE}. The
+     *        smallest are a quarter of that.
+     * @param random the source of particle directions, speeds, lives, sizes and colors.
+     */
+    public ParticleSystem(int capacity, int maxSize, RandomGenerator random) {
+        if (maxSize <= 0 || maxSize > MAX_SIZE) {
+            throw new IllegalArgumentException("Particle size must be between 1 and " + MAX_SIZE
+                    + ".");
+        }
+
+        this.capacity = capacity;
+        this.maxSize = maxSize;
+        this.minSize = Math.max(maxSize / 4, 1);
+        this.random = random;
+
+        this.x = new float[capacity];
+        this.y = new float[capacity];
+        this.vx = new float[capacity];
+        this.vy = new float[capacity];
+        this.life = new int[capacity];
+        this.maxLife = new int[capacity];
+        this.size = new byte[capacity];
+        this.color = new byte[capacity];
+
+        for (int i = 0; i < PALETTE_SIZE; i++) {
+            palette[i] = random.nextInt(0x1000000);
+        }
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public int size() {
+        return count;
+    }
+
+    public void clear() {
+        count = 0;
+    }
+
+    /**
+     * Spawns up to {@code n} particles at the given point, flying off in random directions. Fewer
+     * are spawned when the pool is full.
+     *
+     * @param maxSpeed the highest initial speed in pixels per tick.
+     * @param minLife the shortest life in ticks. Must be positive.
+     * @param maxLife the longest life in ticks.
+     * @return the number of particles spawned.
+     */
+    public int spawnBurst(float xCenter, float yCenter, int n, float maxSpeed, int minLife,
+            int maxLife) {
+        int spawned = Math.min(n, capacity - count);
+        for (int i = count, end = count + spawned; i < end; i++) {
+            double angle = random.nextDouble(2 * Math.PI);
+            float speed = random.nextFloat() * maxSpeed;
+
+            x[i] = xCenter;
+            y[i] = yCenter;
+            vx[i] = (float) Math.cos(angle) * speed;
+            vy[i] = (float) Math.sin(angle) * speed;
+            life[i] = random.nextInt(minLife, maxLife + 1);
+            this.maxLife[i] = life[i];
+            size[i] = (byte) random.nextInt(minSize, maxSize + 1);
+            color[i] = (byte) random.nextInt(PALETTE_SIZE);
+        }
+        count += spawned;
+        return spawned;
+    }
+
+    /**
+     * Advances every particle by one tick and recycles the ones whose life ran out.
+     */
+    public void update() {
+        for (int i = 0; i < count; i++) {
+            x[i] += vx[i];
+            y[i] += vy[i];
+            vx[i] *= DRAG;
+            vy[i] *= DRAG;
+            life[i]--;
+        }
+
+        for (int i = 0; i < count;) {
+            if (life[i] > 0) {
+                i++;
+                continue;
+            }
+
+            // Move the last live particle into the hole
+            int last = --count;
+            x[i] = x[last];
+            y[i] = y[last];
+            vx[i] = vx[last];
+            vy[i] = vy[last];
+            life[i] = life[last];
+            maxLife[i] = maxLife[last];
+            size[i] = size[last];
+            color[i] = color[last];
+        }
+    }
+
+    /**
+     * Returns the area the particles cover when drawn at {@code alpha} of the way from the
+     * previous tick to the current one. The rectangle is reused by the next call.
+     */
+    public Rectangle getBounds(float alpha) {
+        if (count == 0) {
+            bounds.setBounds(0, 0, 0, 0);
+            return bounds;
+        }
+
+        float minX = Float.MAX_VALUE;
+        float minY = Float.MAX_VALUE;
+        float maxX = -Float.MAX_VALUE;
+        float maxY = -Float.MAX_VALUE;
+        float back = 1 - alpha;
+        for (int i = 0; i < count; i++) {
+            float px = x[i] - vx[i] * back;
+            float py = y[i] - vy[i] * back;
+            minX = Math.min(minX, px);
+            minY = Math.min(minY, py);
+            maxX = Math.max(maxX, px);
+            maxY = Math.max(maxY, py);
+        }
+
+        int reach = maxSize / 2 + 1;
+        bounds.setBounds((int) minX - reach, (int) minY - reach, (int) (maxX - minX) + reach * 2,
+                (int) (maxY - minY) + reach * 2);
+        return bounds;
+    }
+
+    /**
+     * Draws the particles into an ARGB pixel array, only touching pixels inside the clip area.
+     *
+     * @param pixels the pixels, row by row.
+     * @param width the width of a row.
+     * @param clip the area that may be drawn into. Must lie within the pixel array.
+     * @param alpha how far between the previous tick and the current one, from 0 to 1.
+     * @param scale how many pixels make up one unit of particle position and size.
+     */
+    public void draw(int[] pixels, int width, Rectangle clip, float alpha, float scale) {
+        int clipX1 = clip.x;
+        int clipY1 = clip.y;
+        int clipX2 = clip.x + clip.width;
+        int clipY2 = clip.y + clip.height;
+        float back = 1 - alpha;
+
+        for (int i = 0; i < count; i++) {
+            int d = Math.min((int) (size[i] * scale) * life[i] / maxLife[i], MAX_DRAWN_SIZE);
+            if (d <= 0) {
+                continue;
+            }
+
+            int left = (int) ((x[i] - vx[i] * back) * scale) - d / 2;
+            int top = (int) ((y[i] - vy[i] * back) * scale) - d / 2;
+            if (left >= clipX2 || top >= clipY2 || left + d <= clipX1 || top + d <= clipY1) {
+                continue;
+            }
+
+            int rgb = palette[color[i]];
+            int sa = ALPHA * life[i] / maxLife[i];
+            int argb = (sa << 24) | rgb;
+
+            // Over an opaque pixel, red and blue are blended together in one multiply
+            int weight = sa + (sa >> 7); // 0 to 256
+            int srcRb = (rgb & 0xFF00FF) * weight;
+            int srcG = (rgb & 0xFF00) * weight;
+            int inv = 256 - weight;
+
+            int[] starts = DISC_STARTS[d];
+            int[] lengths = DISC_LENGTHS[d];
+            int rowStart = Math.max(top, clipY1);
+            int rowEnd = Math.min(top + d, clipY2);
+            for (int py = rowStart; py < rowEnd; py++) {
+                int row = py - top;
+                int x1 = Math.max(left + starts[row], clipX1);
+                int x2 = Math.min(left + starts[row] + lengths[row], clipX2);
+                for (int p = py * width + x1, end = py * width + x2; p < end; p++) {
+                    int dst = pixels[p];
+                    if (dst >>> 24 == 0xFF) {
+                        int rb = (srcRb + (dst & 0xFF00FF) * inv) >>> 8;
+                        int g = (srcG + (dst & 0xFF00) * inv) >>> 8;
+                        pixels[p] = 0xFF000000 | (rb & 0xFF00FF) | (g & 0xFF00);
+                    } else {
+                        pixels[p] = SpanRasterizer.blend(argb, dst);
+                    }
+                }
+            }
+        }
+    }
+}
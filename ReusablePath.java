@@ -0,0 +1,207 @@
+import java.awt.Rectangle;
+import java.awt.Shape;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.FlatteningPathIterator;
+import java.awt.geom.Path2D;
+import java.awt.geom.PathIterator;
+import java.awt.geom.Point2D;
+import java.awt.geom.Rectangle2D;
+import java.util.Arrays;
+
+/**
+ * A path that is emptied and rebuilt instead of allocated anew. Unlike {@link Path2D}, which
+ * creates a new iterator every time it is filled, it hands out the same iterator on every call,
+ * so filling it allocates nothing once its arrays have grown large enough.
+ *
+ * <p>
+ * Only one iteration may be in progress at a time, and a path must not be shared between
+ * threads.
+ */
+public class ReusablePath implements Shape {
+    private byte[] types = new byte[16];
+    private double[] coords = new double[64];
+    private int typeCount;
+    private int coordCount;
+
+    private final Iterator iterator = new Iterator();
+
+    public void reset() {
+        typeCount = 0;
+        coordCount = 0;
+    }
+
+    public void moveTo(double x, double y) {
+        append(PathIterator.SEG_MOVETO, 2);
+        coords[coordCount++] = x;
+        coords[coordCount++] = y;
+    }
+
+    public void lineTo(double x, double y) {
+        append(PathIterator.SEG_LINETO, 2);
+        coords[coordCount++] = x;
+        coords[coordCount++] = y;
+    }
+
+    public void curveTo(double x1, double y1, double x2, double y2, double x3, double y3) {
+        append(PathIterator.SEG_CUBICTO, 6);
+        coords[coordCount++] = x1;
+        coords[coordCount++] = y1;
+        coords[coordCount++] = x2;
+        coords[coordCount++] = y2;
+        coords[coordCount++] = x3;
+        coords[coordCount++] = y3;
+    }
+
+    public void closePath() {
+        append(PathIterator.SEG_CLOSE, 0);
+    }
+
+    private void append(int type, int coordinates) {
+        if (typeCount == types.length) {
+            types = Arrays.copyOf(types, types.length * 2);
+        }
+        if (coordCount + coordinates > coords.length) {
+            coords = Arrays.copyOf(coords, coords.length * 2);
+        }
+        types[typeCount++] = (byte) type;
+    }
+
+    @Override
+    public Rectangle getBounds() {
+        return getBounds2D().getBounds();
+    }
+
+    /**
+     * Returns the bounds of every point of the path, control points included, in a new
+     * rectangle the caller may keep.
+     */
+    @Override
+    public Rectangle2D getBounds2D() {
+        if (coordCount == 0) {
+            return new Rectangle2D.Double();
+        }
+
+        double minX = Double.MAX_VALUE;
+        double minY = Double.MAX_VALUE;
+        double maxX = -Double.MAX_VALUE;
+        double maxY = -Double.MAX_VALUE;
+        for (int i = 0; i < coordCount; i += 2) {
+            minX = Math.min(minX, coords[i]);
+            minY = Math.min(minY, coords[i + 1]);
+            maxX = Math.max(maxX, coords[i]);
+            maxY = Math.max(maxY, coords[i + 1]);
+        }
+        return new Rectangle2D.Double(minX, minY, maxX - minX, maxY - minY);
+    }
+
+    @Override
+    public boolean contains(double x, double y) {
+        return Path2D.contains(getPathIterator(null), x, y);
+    }
+
+    @Override
+    public boolean contains(Point2D p) {
+        return contains(p.getX(), p.getY());
+    }
+
+    @Override
+    public boolean contains(double x, double y, double w, double h) {
+        return Path2D.contains(getPathIterator(null), x, y, w, h);
+    }
+
+    @Override
+    public boolean contains(Rectangle2D r) {
+        return contains(r.getX(), r.getY(), r.getWidth(), r.getHeight());
+    }
+
+    @Override
+    public boolean intersects(double x, double y, double w, double h) {
+        return Path2D.intersects(getPathIterator(null), x, y, w, h);
+    }
+
+    @Override
+    public boolean intersects(Rectangle2D r) {
+        return intersects(r.getX(), r.getY(), r.getWidth(), r.getHeight());
+    }
+
+    /**
+     * Returns the path's iterator, rewound. Every call returns the same iterator.
+     */
+    @Override
+    public PathIterator getPathIterator(AffineTransform transform) {
+        iterator.rewind(transform);
+        return iterator;
+    }
+
+    /**
+     * Returns the path's iterator with its curves flattened into lines. Unlike the other
+     * iterator, this one is new on every call.
+     */
+    @Override
+    public PathIterator getPathIterator(AffineTransform transform, double flatness) {
+        return new FlatteningPathIterator(getPathIterator(transform), flatness);
+    }
+
+    private final class Iterator implements PathIterator {
+        private AffineTransform transform;
+        private int type;
+        private int coord;
+
+        void rewind(AffineTransform transform) {
+            this.transform = transform;
+            this.type = 0;
+            this.coord = 0;
+        }
+
+        @Override
+        public int getWindingRule() {
+            return WIND_NON_ZERO;
+        }
+
+        @Override
+        public boolean isDone() {
+            return type >= typeCount;
+        }
+
+        @Override
+        public void next() {
+            coord += pointCount(types[type++]) * 2;
+        }
+
+        @Override
+        public int currentSegment(float[] result) {
+            int points = pointCount(types[type]);
+            for (int i = 0; i < points * 2; i++) {
+                result[i] = (float) coords[coord + i];
+            }
+            if (transform != null) {
+                transform.transform(result, 0, result, 0, points);
+            }
+            return types[type];
+        }
+
+        @Override
+        public int currentSegment(double[] result) {
+            int points = pointCount(types[type]);
+            System.arraycopy(coords, coord, result, 0, points * 2);
+            if (transform != null) {
+                transform.transform(result, 0, result, 0, points);
+            }
+            return types[type];
+        }
+
+        private int pointCount(int segment) {
+            switch (segment) {
+                case SEG_MOVETO:
+                case SEG_LINETO:
+                    return 1;
+                case SEG_QUADTO:
+                    return 2;
+                case SEG_CUBICTO:
+                    return 3;
+                default:
+                    return 0;
+            }
+        }
+    }
+}
@@ -0,0 +1,372 @@
+import java.awt.Color;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URISyntaxException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The content of the animation, read from a scene file: the sun, the Earth and the colors,
+ * gradients and paths they are drawn with. The file is memory-mapped and parsed once; paths are
+ * compiled into a {@link DisplayList}, so nothing is parsed while the animation runs.
+ *
+ * <p>
+ * A scene file is plain ASCII, one statement per line, tokens separated by spaces. Lines starting
+ * with {@code #} are comments.
+ *
+ * <pre>
+ * color &lt;name&gt; #RRGGBB|#AARRGGBB
+ * gradient &lt;name&gt; &lt;fraction&gt; &lt;color&gt; [&lt;fraction&gt; &lt;color&gt; ...]
+ * sun &lt;x&gt; &lt;y&gt; &lt;radius&gt; &lt;pulse&gt; &lt;gradient&gt;
+ * earth &lt;radius&gt; &lt;ocean color&gt;
+ * path &lt;color&gt;
+ *     move &lt;x&gt; &lt;y&gt;
+ *     line &lt;x&gt; &lt;y&gt;
+ *     curve &lt;x1&gt; &lt;y1&gt; &lt;x2&gt; &lt;y2&gt; &lt;x3&gt; &lt;y3&gt;
+ *     close
+ * end
+ * </pre>
+ *
+ * The sun's center is given as fractions of the canvas size, its radius and pulse in logical
+ * pixels. Paths are filled on the Earth's surface, with coordinates relative to its center for an
+ * Earth of the given radius, and scaled with it. Colors and gradients must be declared before
+ * they are used.
+ *
+ * <p>
+ * Paths are only drawn on the flat Earth ({@code -Danimation.earth=flat}). The globe shows the
+ * land of its own generated texture instead, and ignores them.
+ */
+public final class Scene {
+    /**
+     * The scene file read when the {@code animation.scene} system property names no other,
+     * relative to the directory the classes are loaded from (or the jar is in), so that it is
+     * found from any working directory.
+     */
+    public static final String DEFAULT_FILE = "scenes/default.scene";
+
+    /**
+     * Color stops of a gradient, ready for {@link java.awt.RadialGradientPaint}.
+     */
+    public static final class Gradient {
+        public final float[] fractions;
+        public final Color[] colors;
+
+        private Gradient(float[] fractions, Color[] colors) {
+            this.fractions = fractions;
+            this.colors = colors;
+        }
+    }
+
+    private final double sunX;
+    private final double sunY;
+    private final int sunRadius;
+    private final int sunPulse;
+    private final Gradient sunGradient;
+    private final int earthRadius;
+    private final Color oceanColor;
+    private final DisplayList continents;
+
+    private Scene(Parser parser) {
+        this.sunX = parser.sunX;
+        this.sunY = parser.sunY;
+        this.sunRadius = parser.sunRadius;
+        this.sunPulse = parser.sunPulse;
+        this.sunGradient = parser.sunGradient;
+        this.earthRadius = parser.earthRadius;
+        this.oceanColor = parser.oceanColor;
+        this.continents = parser.continents.build();
+    }
+
+    /**
+     * Loads the scene file named by the {@code animation.scene} system property, relative to the
+     * working directory, or else {@link #DEFAULT_FILE}.
+     *
+     * @throws UncheckedIOException if the file cannot be read or is not a valid scene.
+     */
+    public static Scene loadDefault() {
+        String name = System.getProperty("animation.scene");
+        Path file = name != null ? Paths.get(name) : codeDirectory().resolve(DEFAULT_FILE);
+        try {
+            return load(file);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Returns the directory the classes are loaded from, or the one their jar is in.
+     */
+    private static Path codeDirectory() {
+        try {
+            Path code = Paths.get(Scene.class.getProtectionDomain().getCodeSource().getLocation()
+                    .toURI());
+            return Files.isDirectory(code) ? code : code.toAbsolutePath().getParent();
+        } catch (URISyntaxException e) {
+            throw new IllegalStateException("Cannot locate the classes", e);
+        }
+    }
+
+    /**
+     * Loads a scene file.
+     *
+     * @throws IOException if the file cannot be read or is not a valid scene.
+     */
+    public static Scene load(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            MappedByteBuffer bytes = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            Parser parser = new Parser(file);
+            parser.parse(bytes);
+            return new Scene(parser);
+        }
+    }
+
+    /**
+     * Returns the x-coordinate of the sun's center, as a fraction of the canvas width.
+     */
+    public double getSunX() {
+        return sunX;
+    }
+
+    /**
+     * Returns the y-coordinate of the sun's center, as a fraction of the canvas height.
+     */
+    public double getSunY() {
+        return sunY;
+    }
+
+    public int getSunRadius() {
+        return sunRadius;
+    }
+
+    /**
+     * Returns by how much the sun's radius grows and shrinks as it pulses.
+     */
+    public int getSunPulse() {
+        return sunPulse;
+    }
+
+    public Gradient getSunGradient() {
+        return sunGradient;
+    }
+
+    /**
+     * Returns the radius of a newborn Earth, which the continents are given for.
+     */
+    public int getEarthRadius() {
+        return earthRadius;
+    }
+
+    /**
+     * Returns the radius of an Earth the given number of ticks old, which grows by one pixel
+     * every five ticks from {@link #getEarthRadius()}.
+     */
+    public int getEarthRadius(int age) {
+        return earthRadius + age / 5;
+    }
+
+    public Color getOceanColor() {
+        return oceanColor;
+    }
+
+    /**
+     * Returns the paths drawn on the flat Earth's surface, relative to its center for an Earth
+     * of {@link #getEarthRadius()}. The globe does not draw them.
+     */
+    public DisplayList getContinents() {
+        return continents;
+    }
+
+    private static final class Parser {
+        private final Path file;
+        private final Map<String, Color> colors = new HashMap<>();
+        private final Map<String, Gradient> gradients = new HashMap<>();
+        private final DisplayList.Builder continents = new DisplayList.Builder();
+        private final StringBuilder line = new StringBuilder();
+        private int lineNumber;
+        private boolean inPath = false;
+
+        private boolean hasSun = false;
+        private double sunX;
+        private double sunY;
+        private int sunRadius;
+        private int sunPulse;
+        private Gradient sunGradient;
+        private int earthRadius;
+        private Color oceanColor;
+
+        Parser(Path file) {
+            this.file = file;
+        }
+
+        void parse(MappedByteBuffer bytes) throws IOException {
+            while (bytes.hasRemaining()) {
+                byte b = bytes.get();
+                if (b == '\n') {
+                    statement();
+                } else if (b != '\r') {
+                    line.append((char) (b & 0xFF));
+                }
+            }
+            statement();
+
+            if (inPath) {
+                throw error("Path is missing its end");
+            }
+            if (!hasSun) {
+                throw error("No sun");
+            }
+            if (oceanColor == null) {
+                throw error("No earth");
+            }
+        }
+
+        private void statement() throws IOException {
+            lineNumber++;
+            String text = line.toString().strip();
+            line.setLength(0);
+            if (text.isEmpty() || text.startsWith("#")) {
+                return;
+            }
+
+            String[] tokens = text.split("\\s+");
+            if (inPath) {
+                pathStatement(tokens);
+                return;
+            }
+            switch (tokens[0]) {
+                case "color" -> {
+                    arguments(tokens, 2);
+                    colors.put(tokens[1], parseColor(tokens[2]));
+                }
+                case "gradient" -> gradient(tokens);
+                case "sun" -> {
+                    arguments(tokens, 5);
+                    sunX = fraction(tokens[1]);
+                    sunY = fraction(tokens[2]);
+                    sunRadius = whole(tokens[3], 1);
+                    sunPulse = whole(tokens[4], 0);
+                    sunGradient = lookup(gradients, "gradient", tokens[5]);
+                    hasSun = true;
+                }
+                case "earth" -> {
+                    arguments(tokens, 2);
+                    earthRadius = whole(tokens[1], 1);
+                    oceanColor = lookup(colors, "color", tokens[2]);
+                }
+                case "path" -> {
+                    arguments(tokens, 1);
+                    continents.color(lookup(colors, "color", tokens[1]));
+                    inPath = true;
+                }
+                default -> throw error("Unknown statement '" + tokens[0] + "'");
+            }
+        }
+
+        private void pathStatement(String[] tokens) throws IOException {
+            switch (tokens[0]) {
+                case "move" -> {
+                    arguments(tokens, 2);
+                    continents.moveTo(number(tokens[1]), number(tokens[2]));
+                }
+                case "line" -> {
+                    arguments(tokens, 2);
+                    continents.lineTo(number(tokens[1]), number(tokens[2]));
+                }
+                case "curve" -> {
+                    arguments(tokens, 6);
+                    continents.curveTo(number(tokens[1]), number(tokens[2]), number(tokens[3]),
+                            number(tokens[4]), number(tokens[5]), number(tokens[6]));
+                }
+                case "close" -> {
+                    arguments(tokens, 0);
+                    continents.closePath();
+                }
+                case "end" -> {
+                    arguments(tokens, 0);
+                    continents.fill();
+                    inPath = false;
+                }
+                default -> throw error("Unknown path statement '" + tokens[0] + "'");
+            }
+        }
+
+        private void gradient(String[] tokens) throws IOException {
+            if (tokens.length < 4 || tokens.length % 2 != 0) {
+                throw error("A gradient needs a name and pairs of fraction and color");
+            }
+
+            int stops = (tokens.length - 2) / 2;
+            float[] fractions = new float[stops];
+            Color[] stopColors = new Color[stops];
+            for (int i = 0; i < stops; i++) {
+                fractions[i] = (float) fraction(tokens[2 + i * 2]);
+                if (i > 0 && fractions[i] <= fractions[i - 1]) {
+                    throw error("Gradient fractions must increase");
+                }
+                stopColors[i] = lookup(colors, "color", tokens[3 + i * 2]);
+            }
+            gradients.put(tokens[1], new Gradient(fractions, stopColors));
+        }
+
+        private void arguments(String[] tokens, int count) throws IOException {
+            if (tokens.length != count + 1) {
+                throw error("'" + tokens[0] + "' takes " + count + " arguments");
+            }
+        }
+
+        private Color parseColor(String token) throws IOException {
+            if (!token.startsWith("#") || (token.length() != 7 && token.length() != 9)) {
+                throw error("Not a color: '" + token + "'");
+            }
+            try {
+                long value = Long.parseLong(token.substring(1), 16);
+                return token.length() == 7 ? new Color((int) value)
+                        : new Color((int) value, true);
+            } catch (NumberFormatException e) {
+                throw error("Not a color: '" + token + "'");
+            }
+        }
+
+        private double number(String token) throws IOException {
+            try {
+                return Double.parseDouble(token);
+            } catch (NumberFormatException e) {
+                throw error("Not a number: '" + token + "'");
+            }
+        }
+
+        private double fraction(String token) throws IOException {
+            double value = number(token);
+            if (value < 0 || value > 1) {
+                throw error("Not a fraction from 0 to 1: '" + token + "'");
+            }
+            return value;
+        }
+
+        private int whole(String token, int min) throws IOException {
+            double value = number(token);
+            if (value < min || value != Math.rint(value)) {
+                throw error("Not a whole number of at least " + min + ": '" + token + "'");
+            }
+            return (int) value;
+        }
+
+        private <T> T lookup(Map<String, T> map, String kind, String name) throws IOException {
+            T value = map.get(name);
+            if (value == null) {
+                throw error("Unknown " + kind + " '" + name + "'");
+            }
+            return value;
+        }
+
+        private IOException error(String message) {
+            return new IOException(file + ":" + lineNumber + ": " + message);
+        }
+    }
+}
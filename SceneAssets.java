@@ -0,0 +1,179 @@
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RadialGradientPaint;
+import java.awt.geom.Ellipse2D;
+import java.awt.image.BufferedImage;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.function.Supplier;
+import java.util.random.RandomGenerator;
+
+/**
+ * Everything panels drawing the same scene from the same world seed can share: the scene, the
+ * rendered backgrounds, the Earth sprites, the globe and the shapes of the clouds. A panel keeps
+ * only the state of its own simulation, so many panels can run side by side, e.g. one per viewer
+ * of {@link AnimationServer}, without each of them holding megabytes of caches of its own.
+ *
+ * <p>
+ * The assets are immutable or cached behind a lock, so panels rendering on different threads may
+ * share them. Cached images are read by every panel and must never be drawn into.
+ */
+public final class SceneAssets {
+    /**
+     * The most Earth radii the sprite and globe caches keep, enough for every radius of a life.
+     */
+    public static final int CACHE_CAPACITY = 32;
+    public static final int CLOUD_COUNT = 12; // About half of them are on the far side
+
+    private static final int BACKGROUND_CAPACITY = 2; // The current canvas size and the last
+    private static final boolean FLAT_EARTH = "flat".equals(System.getProperty("animation.earth"));
+
+    // Gradients of the sprite painters
+    private static final float[] SHADOW_STOPS = {0.0f, 1.0f};
+    private static final Color[] SHADOW_COLORS = {new Color(0, 0, 0, 100), new Color(0, 0, 0, 0)};
+    private static final float[] ATMOSPHERE_STOPS = {0.7f, 1.0f};
+    private static final Color[] ATMOSPHERE_COLORS =
+            {new Color(255, 255, 255, 64), new Color(255, 255, 255, 0)};
+
+    private final Scene scene;
+    private final long starSeed;
+    private final GlobeRenderer globe;
+    private final EarthSpriteCache earthSprites;
+    private final CloudSystem cloudShapes;
+    private final Map<String, BufferedImage> backgrounds;
+
+    // Geometry reused by the sprite painters, which only run under the sprite cache's lock
+    private final Ellipse2D.Double earthClip = new Ellipse2D.Double();
+    private final ReusablePath path = new ReusablePath();
+
+    /**
+     * @param scene the sun, Earth and colors to draw.
+     * @param starSeed the seed the stars are placed from.
+     * @param globeSeed the seed the globe's terrain and the cloud shapes are generated from.
+     */
+    public SceneAssets(Scene scene, long starSeed, long globeSeed) {
+        this.scene = scene;
+        this.starSeed = starSeed;
+        this.globe = FLAT_EARTH ? null : new GlobeRenderer(CACHE_CAPACITY, globeSeed);
+        this.earthSprites = new EarthSpriteCache(CACHE_CAPACITY, this::paintEarthSurface,
+                this::paintEarthShadow, this::paintEarthAtmosphere);
+        this.cloudShapes = new CloudSystem(CLOUD_COUNT, CACHE_CAPACITY,
+                new SplittableRandom(globeSeed).split());
+        this.backgrounds = new LinkedHashMap<>(BACKGROUND_CAPACITY * 2, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, BufferedImage> eldest) {
+                return size() > BACKGROUND_CAPACITY;
+            }
+        };
+    }
+
+    /**
+     * Creates the assets with seeds drawn from the given source.
+     */
+    public static SceneAssets create(Scene scene, RandomGenerator random) {
+        long starSeed = random.nextLong();
+        long globeSeed = random.nextLong(); // Drawn either way, so both modes share the scene
+        return new SceneAssets(scene, starSeed, globeSeed);
+    }
+
+    public Scene getScene() {
+        return scene;
+    }
+
+    /**
+     * Returns the seed the stars are placed from, so they are the same whenever the canvas
+     * returns to the same size.
+     */
+    public long getStarSeed() {
+        return starSeed;
+    }
+
+    /**
+     * Returns the renderer of the globe's surface, or null when the Earth is flat.
+     */
+    public GlobeRenderer getGlobe() {
+        return globe;
+    }
+
+    public EarthSpriteCache getEarthSprites() {
+        return earthSprites;
+    }
+
+    /**
+     * Returns clouds whose shapes and masks panels share, by making their own clouds from them
+     * with {@link CloudSystem#CloudSystem(CloudSystem, RandomGenerator)}.
+     */
+    public CloudSystem getCloudShapes() {
+        return cloudShapes;
+    }
+
+    /**
+     * Returns the background of a canvas of the given size in buffer pixels, rendering it with
+     * {@code renderer} if none is cached. Panels sharing the assets render equal backgrounds for
+     * equal sizes, so whichever of them renders it first does so for all.
+     */
+    public synchronized BufferedImage getBackground(int width, int height, double scale,
+            Supplier<BufferedImage> renderer) {
+        String key = width + "x" + height + "@" + scale;
+        BufferedImage background = backgrounds.get(key);
+        if (background == null) {
+            background = renderer.get();
+            backgrounds.put(key, background);
+        }
+        return background;
+    }
+
+    private void paintEarthSurface(Graphics2D g2d, int earthRadius) {
+        // Draw the base blue ocean
+        g2d.setColor(scene.getOceanColor());
+        AnimationPanel.drawMidpointCircle(g2d, earthRadius, earthRadius, earthRadius, true);
+
+        // Set clipping area for the continents
+        earthClip.setFrame(0, 0, earthRadius * 2, earthRadius * 2);
+        g2d.setClip(earthClip);
+
+        // Draw Continents
+        drawContinents(g2d, earthRadius, earthRadius, earthRadius);
+    }
+
+    private void paintEarthShadow(Graphics2D g2d, int earthRadius) {
+        earthClip.setFrame(0, 0, earthRadius * 2, earthRadius * 2);
+        g2d.setClip(earthClip);
+        applyShadow(g2d, earthRadius, 0);
+    }
+
+    private void paintEarthAtmosphere(Graphics2D g2d, int earthRadius) {
+        earthClip.setFrame(0, 0, earthRadius * 2, earthRadius * 2);
+        g2d.setClip(earthClip);
+        drawAtmosphere(g2d, earthRadius, earthRadius, earthRadius);
+    }
+
+    private void applyShadow(Graphics2D g2d, int earthRadius, double lightAngle) {
+        // Calculate the shadow angle
+        double shadowAngle = lightAngle + Math.PI;
+
+        // Create a gradient paint that simulates a shadow for depth
+        float centerX = (float) (earthRadius + earthRadius * TrigTable.cos(shadowAngle));
+        float centerY = (float) (earthRadius + earthRadius * TrigTable.sin(shadowAngle));
+        RadialGradientPaint p = new RadialGradientPaint(centerX, centerY, earthRadius,
+                SHADOW_STOPS, SHADOW_COLORS);
+
+        g2d.setPaint(p);
+        g2d.fillOval(0, 0, earthRadius * 2, earthRadius * 2);
+    }
+
+    private void drawContinents(Graphics2D g2d, int centerX, int centerY, int earthRadius) {
+        // Replayed from the scene's display list, scaled from the radius it was given for
+        scene.getContinents().replay(g2d, path, centerX, centerY,
+                earthRadius / (double) scene.getEarthRadius());
+    }
+
+    private void drawAtmosphere(Graphics2D g2d, int centerX, int centerY, int earthRadius) {
+        RadialGradientPaint p = new RadialGradientPaint(centerX, centerY, earthRadius * 1.1f,
+                ATMOSPHERE_STOPS, ATMOSPHERE_COLORS);
+        g2d.setPaint(p);
+        g2d.fillOval(centerX - earthRadius, centerY - earthRadius, earthRadius * 2,
+                earthRadius * 2);
+    }
+}
@@ -0,0 +1,393 @@
+import java.awt.Color;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.Arrays;
+
+/**
+ * Fills circles and ellipses by writing horizontal spans straight into the pixel array of a
+ * {@link BufferedImage#TYPE_INT_ARGB} image. It produces the same coverage as
+ * {@link AnimationPanel#drawMidpointCircle} and {@link AnimationPanel#drawMidpointEllipse}, which
+ * {@code GoldenImages shapes} checks, but each scanline is written once, with no Java2D pipeline
+ * round-trip per line or pixel.
+ *
+ * <p>
+ * Colors are supplied per span by a {@link SpanPaint}. Spans are clipped to the image bounds
+ * before the paint is called.
+ */
+public class SpanRasterizer {
+    /**
+     * Writes {@code length} pixels of row {@code y}, starting at column {@code x}, into
+     * {@code pixels} at {@code offset}.
+     */
+    @FunctionalInterface
+    public interface SpanPaint {
+        void fillSpan(int[] pixels, int offset, int x, int y, int length);
+    }
+
+    private final int[] pixels;
+    private final int width;
+    private final int height;
+
+    // Half width of the shape for every row from the center, reused between calls
+    private int[] halfWidths = new int[0];
+
+    public SpanRasterizer(BufferedImage image) {
+        if (image.getType() != BufferedImage.TYPE_INT_ARGB) {
+            throw new IllegalArgumentException("Image must be TYPE_INT_ARGB.");
+        }
+
+        this.pixels = pixelsOf(image);
+        this.width = image.getWidth();
+        this.height = image.getHeight();
+    }
+
+    /**
+     * Returns the pixel array behind a {@link BufferedImage#TYPE_INT_ARGB} image. Java2D stops
+     * caching the image in video memory once its pixels are handed out.
+     */
+    public static int[] pixelsOf(BufferedImage image) {
+        return ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+    }
+
+    public int[] getPixels() {
+        return pixels;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * Fills a circle using the midpoint circle algorithm.
+     *
+     * @param xCenter the x-coordinate of the circle's center.
+     * @param yCenter the y-coordinate of the circle's center.
+     * @param radius the radius of the circle. Must be non-negative.
+     * @param paint the paint that colors each span.
+     */
+    public void fillCircle(int xCenter, int yCenter, int radius, SpanPaint paint) {
+        if (radius < 0) {
+            throw new IllegalArgumentException("Radius cannot be negative.");
+        }
+
+        int[] rows = rowBuffer(radius);
+        int x = 0;
+        int y = radius;
+        int D = 1 - radius;
+        int Dx = 1; // Initial value of 2 * x + 1
+        int Dy = -2 * radius;
+        while (x <= y) {
+            rows[y] = Math.max(rows[y], x);
+            rows[x] = Math.max(rows[x], y);
+
+            x++;
+            Dx += 2;
+            D += Dx;
+            if (D >= 0) {
+                y--;
+                Dy += 2;
+                D += Dy;
+            }
+        }
+
+        fillRows(xCenter, yCenter, radius, paint);
+    }
+
+    /**
+     * Fills an ellipse using the midpoint ellipse algorithm.
+     *
+     * @param xCenter the x-coordinate of the ellipse's center.
+     * @param yCenter the y-coordinate of the ellipse's center.
+     * @param a the semi-major axis of the ellipse. Must be non-negative.
+     * @param b the semi-minor axis of the ellipse. Must be non-negative.
+     * @param paint the paint that colors each span.
+     */
+    public void fillEllipse(int xCenter, int yCenter, int a, int b, SpanPaint paint) {
+        if (a < 0 || b < 0) {
+            throw new IllegalArgumentException("Axes cannot be negative.");
+        }
+
+        int[] rows = rowBuffer(b);
+        int a2 = a * a;
+        int b2 = b * b;
+        int twoA2 = 2 * a2;
+        int twoB2 = 2 * b2;
+        int x = 0;
+        int y = b;
+        int Dx = 0;
+        int Dy = twoA2 * y;
+        int D = Math.round(b2 - (a2 * b) + (0.25f * a2));
+
+        while (Dx <= Dy) {
+            rows[y] = Math.max(rows[y], x);
+
+            x++;
+            Dx += twoB2;
+            D += Dx + b2;
+            if (D >= 0) {
+                y--;
+                Dy -= twoA2;
+                D -= Dy;
+            }
+        }
+
+        x = a;
+        y = 0;
+        Dx = twoB2 * x;
+        Dy = 0;
+        D = Math.round(a2 - (b2 * a) + (0.25f * b2));
+        while (Dx >= Dy && y <= b) {
+            rows[y] = Math.max(rows[y], x);
+
+            y++;
+            Dy += twoA2;
+            D += Dy + a2;
+            if (D >= 0) {
+                x--;
+                Dx -= twoB2;
+                D -= Dx;
+            }
+        }
+
+        fillRows(xCenter, yCenter, b, paint);
+    }
+
+    /**
+     * Blends an ARGB image over the target with its top-left corner at the given point, clipped
+     * to the target bounds.
+     *
+     * @param source the image pixels, row by row, non-premultiplied.
+     * @param stride the distance between two rows of {@code source}.
+     * @param sourceWidth the width of the area of {@code source} to draw.
+     * @param sourceHeight the height of the area of {@code source} to draw.
+     */
+    public void drawImage(int[] source, int stride, int sourceWidth, int sourceHeight, int x,
+            int y) {
+        int x1 = Math.max(x, 0);
+        int x2 = Math.min(x + sourceWidth, width);
+        int y1 = Math.max(y, 0);
+        int y2 = Math.min(y + sourceHeight, height);
+        for (int row = y1; row < y2; row++) {
+            int s = (row - y) * stride + x1 - x;
+            for (int i = row * width + x1, end = row * width + x2; i < end; i++, s++) {
+                int src = source[s];
+                if (src >>> 24 != 0) {
+                    pixels[i] = blend(src, pixels[i]);
+                }
+            }
+        }
+    }
+
+    /**
+     * Blends an ARGB image over the target like {@link #drawImage}, with each pixel's alpha
+     * scaled by the alpha of the matching mask pixel, as if drawn through
+     * {@link java.awt.AlphaComposite#DstIn}.
+     *
+     * @param mask the mask pixels, row by row, at least as large as the drawn area.
+     * @param maskStride the distance between two rows of {@code mask}.
+     */
+    public void drawMasked(int[] source, int stride, int[] mask, int maskStride,
+            int sourceWidth, int sourceHeight, int x, int y) {
+        int x1 = Math.max(x, 0);
+        int x2 = Math.min(x + sourceWidth, width);
+        int y1 = Math.max(y, 0);
+        int y2 = Math.min(y + sourceHeight, height);
+        for (int row = y1; row < y2; row++) {
+            int s = (row - y) * stride + x1 - x;
+            int m = (row - y) * maskStride + x1 - x;
+            for (int i = row * width + x1, end = row * width + x2; i < end; i++, s++, m++) {
+                int src = source[s];
+                int sa = ((src >>> 24) * (mask[m] >>> 24) + 127) / 255;
+                if (sa != 0) {
+                    pixels[i] = blend((sa << 24) | (src & 0xFFFFFF), pixels[i]);
+                }
+            }
+        }
+    }
+
+    /**
+     * Blends a square ARGB image over the target, rotated about its center and with the center
+     * at the given point. Pixels are sampled nearest-neighbor, like
+     * {@link java.awt.Graphics2D#drawImage} with the default interpolation, but no transform or
+     * clip is built for it.
+     *
+     * @param source the image pixels, row by row, non-premultiplied.
+     * @param size the width and height of the image.
+     * @param cos the cosine of the rotation angle.
+     * @param sin the sine of the rotation angle.
+     */
+    public void drawRotated(int[] source, int size, double xCenter, double yCenter, double cos,
+            double sin) {
+        double half = size / 2.0;
+        int reach = (int) Math.ceil(half * Math.sqrt(2)) + 1; // The corners, at any angle
+        int x1 = Math.max((int) xCenter - reach, 0);
+        int x2 = Math.min((int) xCenter + reach, width);
+        int y1 = Math.max((int) yCenter - reach, 0);
+        int y2 = Math.min((int) yCenter + reach, height);
+
+        for (int y = y1; y < y2; y++) {
+            // Rotate the pixel centers back into the image; each step right moves by (cos, -sin)
+            double dx = x1 + 0.5 - xCenter;
+            double dy = y + 0.5 - yCenter;
+            double u = dx * cos + dy * sin + half;
+            double v = dy * cos - dx * sin + half;
+            for (int i = y * width + x1, end = y * width + x2; i < end; i++, u += cos, v -= sin) {
+                if (u >= 0 && v >= 0 && u < size && v < size) {
+                    int src = source[(int) v * size + (int) u];
+                    if (src >>> 24 != 0) {
+                        pixels[i] = blend(src, pixels[i]);
+                    }
+                }
+            }
+        }
+    }
+
+    private int[] rowBuffer(int rowCount) {
+        if (halfWidths.length < rowCount + 1) {
+            halfWidths = new int[rowCount + 1];
+        }
+        Arrays.fill(halfWidths, 0, rowCount + 1, -1);
+        return halfWidths;
+    }
+
+    private void fillRows(int xCenter, int yCenter, int rowCount, SpanPaint paint) {
+        for (int dy = 0; dy <= rowCount; dy++) {
+            int halfWidth = halfWidths[dy];
+            if (halfWidth < 0) {
+                continue;
+            }
+
+            fillSpan(xCenter - halfWidth, xCenter + halfWidth, yCenter + dy, paint);
+            if (dy != 0) {
+                fillSpan(xCenter - halfWidth, xCenter + halfWidth, yCenter - dy, paint);
+            }
+        }
+    }
+
+    private void fillSpan(int x1, int x2, int y, SpanPaint paint) {
+        if (y < 0 || y >= height) {
+            return;
+        }
+
+        int start = Math.max(x1, 0);
+        int end = Math.min(x2, width - 1);
+        if (start > end) {
+            return;
+        }
+
+        paint.fillSpan(pixels, y * width + start, start, y, end - start + 1);
+    }
+
+    /**
+     * Composites a non-premultiplied ARGB source pixel over a destination pixel.
+     */
+    public static int blend(int src, int dst) {
+        int sa = src >>> 24;
+        if (sa == 255) {
+            return src;
+        }
+        if (sa == 0) {
+            return dst;
+        }
+
+        int da = dst >>> 24;
+        int inv = 255 - sa;
+        int outA = sa + (da * inv + 127) / 255;
+        int dw = da * inv / 255; // Destination weight before normalizing by outA
+
+        int r = (((src >> 16) & 0xFF) * sa + ((dst >> 16) & 0xFF) * dw) / outA;
+        int g = (((src >> 8) & 0xFF) * sa + ((dst >> 8) & 0xFF) * dw) / outA;
+        int b = ((src & 0xFF) * sa + (dst & 0xFF) * dw) / outA;
+        return (outA << 24) | (r << 16) | (g << 8) | b;
+    }
+
+    /**
+     * Returns a paint that fills spans with a single color, blending it if it is translucent.
+     */
+    public static SpanPaint solid(Color color) {
+        int argb = color.getRGB();
+        if ((argb >>> 24) == 255) {
+            return (pixels, offset, x, y, length) -> Arrays.fill(pixels, offset,
+                    offset + length, argb);
+        }
+        return (pixels, offset, x, y, length) -> {
+            for (int i = offset, end = offset + length; i < end; i++) {
+                pixels[i] = blend(argb, pixels[i]);
+            }
+        };
+    }
+
+    /**
+     * A radial gradient with the same stops and padding as {@link java.awt.RadialGradientPaint}.
+     * Colors are looked up by squared distance from the center, so no square root is taken per
+     * pixel. Center and radius are mutable so the same paint can follow a pulsing shape.
+     */
+    public static final class RadialGradient implements SpanPaint {
+        private static final int LUT_SIZE = 1024;
+
+        private final int[] lut = new int[LUT_SIZE];
+        private final boolean opaque;
+        private int xCenter;
+        private int yCenter;
+        private float lutScale;
+
+        public RadialGradient(float[] fractions, Color[] colors) {
+            if (fractions.length != colors.length || fractions.length < 2) {
+                throw new IllegalArgumentException("Need at least two matching stops.");
+            }
+
+            boolean allOpaque = true;
+            for (int i = 0; i < LUT_SIZE; i++) {
+                float t = (float) Math.sqrt(i / (float) (LUT_SIZE - 1));
+                lut[i] = interpolate(fractions, colors, t);
+                allOpaque &= (lut[i] >>> 24) == 255;
+            }
+            this.opaque = allOpaque;
+        }
+
+        public void setShape(int xCenter, int yCenter, float radius) {
+            this.xCenter = xCenter;
+            this.yCenter = yCenter;
+            this.lutScale = (LUT_SIZE - 1) / (radius * radius);
+        }
+
+        @Override
+        public void fillSpan(int[] pixels, int offset, int x, int y, int length) {
+            int dy = y - yCenter;
+            float dy2 = dy * dy;
+            int dx = x - xCenter;
+            for (int i = offset, end = offset + length; i < end; i++, dx++) {
+                int index = (int) ((dx * dx + dy2) * lutScale);
+                int color = lut[index < LUT_SIZE ? index : LUT_SIZE - 1];
+                pixels[i] = opaque ? color : blend(color, pixels[i]);
+            }
+        }
+
+        private static int interpolate(float[] fractions, Color[] colors, float t) {
+            if (t <= fractions[0]) {
+                return colors[0].getRGB();
+            }
+            for (int i = 1; i < fractions.length; i++) {
+                if (t <= fractions[i]) {
+                    float f = (t - fractions[i - 1]) / (fractions[i] - fractions[i - 1]);
+                    return lerp(colors[i - 1].getRGB(), colors[i].getRGB(), f);
+                }
+            }
+            return colors[colors.length - 1].getRGB();
+        }
+
+        private static int lerp(int c1, int c2, float f) {
+            int argb = 0;
+            for (int shift = 0; shift < 32; shift += 8) {
+                int a = (c1 >>> shift) & 0xFF;
+                int b = (c2 >>> shift) & 0xFF;
+                argb |= Math.round(a + (b - a) * f) << shift;
+            }
+            return argb;
+        }
+    }
+}
@@ -0,0 +1,242 @@
+import java.util.Arrays;
+
+/**
+ * A uniform grid of square cells, rebuilt from scratch every tick, that finds the discs touching
+ * a disc without looking at every other one. Cells are at least as wide as the largest disc, so
+ * touching discs are always in the same or neighbouring cells. Positions must not be negative.
+ *
+ * <p>
+ * The grid is a spatial hash: cells are hashed into a table of buckets sized by the number of
+ * discs rather than by the area they are spread over, so a sparse field costs no more than a
+ * dense one. Rows of cells are scattered over the table, but the cells of a row keep to
+ * consecutive buckets, so the neighbours of a cell are three runs of discs, one per row. The
+ * table has two to four buckets per disc, as far cells that share a bucket cost every lookup.
+ *
+ * <p>
+ * Discs are counting-sorted by bucket into flat int arrays: the start of every bucket's run in
+ * one, the discs of all runs in the other. Positions and radii are not copied in that order:
+ * every copy is one more store to a random place per disc and build, which costs more than the
+ * few lookups that read them. Building it is a few passes over the discs and the buckets, and
+ * allocates nothing once the arrays have grown to size.
+ */
+public class SpatialGrid {
+    private final float cellSize;
+    private final float cellsPerUnit; // The inverse of the cell size
+    private int mask; // Buckets less one; their count is a power of two
+    private int[] bucketStarts = new int[2]; // Start of every bucket's run, and end of the last
+    private int[] members = new int[0]; // Disc indices, sorted by bucket
+    private int[] memberBuckets = new int[0]; // Bucket of every disc, by its place in the build
+
+    // The discs of the last build
+    private float[] x;
+    private float[] y;
+    private float[] radius;
+    private float largest; // The largest radius
+
+    /**
+     * @param cellSize the width of a cell. Must be at least the largest diameter of a disc.
+     */
+    public SpatialGrid(float cellSize) {
+        if (!(cellSize > 0)) {
+            throw new IllegalArgumentException("Cell size must be positive.");
+        }
+
+        this.cellSize = cellSize;
+        this.cellsPerUnit = 1 / cellSize;
+    }
+
+    /**
+     * Sorts the given discs into cells, and leaves them in the grid's order. The arrays are kept,
+     * not copied, until the next build. Discs mostly stay in their cells from one build to the
+     * next, so building again from the reordered discs reads and writes the buckets nearly in
+     * sequence rather than all over the table.
+     *
+     * @param x the center of every disc.
+     * @param y the center of every disc.
+     * @param radius the radius of every disc.
+     * @param discs the indices of the discs to put in the grid, in its first {@code count}
+     *        entries, which are reordered.
+     */
+    public void build(float[] x, float[] y, float[] radius, int[] discs, int count) {
+        this.x = x;
+        this.y = y;
+        this.radius = radius;
+
+        // Between two and four buckets per disc
+        int buckets = Integer.highestOneBit(Math.max(count, 1)) << 2;
+        mask = buckets - 1;
+        if (bucketStarts.length < buckets + 1) {
+            bucketStarts = new int[buckets + 1];
+        }
+        if (members.length < count) {
+            members = new int[count];
+            memberBuckets = new int[count];
+        }
+
+        // Count the discs of every bucket, and sum the counts up to the end of every bucket's run
+        Arrays.fill(bucketStarts, 0, buckets + 1, 0);
+        for (int k = 0; k < count; k++) {
+            int disc = discs[k];
+            int bucket = bucket(cell(x[disc]), cell(y[disc]));
+            memberBuckets[k] = bucket;
+            bucketStarts[bucket]++;
+        }
+        for (int bucket = 1; bucket < buckets; bucket++) {
+            bucketStarts[bucket] += bucketStarts[bucket - 1];
+        }
+
+        // Fill every run from its end, which leaves the sums at the runs' starts
+        largest = 0;
+        for (int k = 0; k < count; k++) {
+            int disc = discs[k];
+            int slot = --bucketStarts[memberBuckets[k]];
+            members[slot] = disc;
+            largest = Math.max(largest, radius[disc]);
+        }
+        bucketStarts[buckets] = count;
+        System.arraycopy(members, 0, discs, 0, count);
+    }
+
+    /**
+     * Returns a disc of the last build other than {@code disc} that overlaps it, or -1 if none
+     * does. The disc itself need not be in the grid.
+     */
+    public int findTouching(int disc) {
+        return findTouching(disc, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Returns a disc of the last build with a lower index than {@code disc} that overlaps it, or
+     * -1 if none does, so that of every group of overlapping discs the first can be told apart.
+     */
+    public int findTouchingBefore(int disc) {
+        return findTouching(disc, disc);
+    }
+
+    /**
+     * Marks every disc of the last build that overlaps {@code disc}, and {@code disc} itself if
+     * any does, in {@code touching}, which is indexed by disc. Returns the clearance of the disc:
+     * the distance from its edge to the nearest edge of a disc it does not overlap. Only the
+     * discs in the disc's own and neighbouring cells are looked at, and one as large as the
+     * largest of the build is counted as if it were just past them, so the clearance may be
+     * less than the true one but never more. The wider the cells are than the discs, the further
+     * that is.
+     */
+    public float findClearance(int disc, boolean[] touching) {
+        float cx = x[disc];
+        float cy = y[disc];
+        float r = radius[disc];
+        int column = cell(cx);
+        int row = cell(cy);
+
+        // The nearest edge of the cells looked at, less the largest disc past it
+        float left = cx - (column - 1) * cellSize;
+        float right = (column + 2) * cellSize - cx;
+        float top = cy - (row - 1) * cellSize;
+        float bottom = (row + 2) * cellSize - cy;
+        float clearance = Math.min(Math.min(left, right), Math.min(top, bottom)) - largest - r;
+
+        for (int j = row - 1; j <= row + 1; j++) {
+            int first = bucket(column - 1, j);
+            if (first + 2 > mask) {
+                // The row's cells wrap around the end of the table, so each is a run of its own
+                for (int i = 0; i < 3; i++) {
+                    int bucket = first + i & mask;
+                    clearance = findClearance(disc, cx, cy, r, bucketStarts[bucket],
+                            bucketStarts[bucket + 1], clearance, touching);
+                }
+            } else {
+                clearance = findClearance(disc, cx, cy, r, bucketStarts[first],
+                        bucketStarts[first + 3], clearance, touching);
+            }
+        }
+        return clearance;
+    }
+
+    /**
+     * Checks the discs from {@code from} up to {@code to} in the grid's order, and returns the
+     * least of {@code clearance} and the gaps to those the disc does not overlap.
+     */
+    private float findClearance(int disc, float cx, float cy, float r, int from, int to,
+            float clearance, boolean[] touching) {
+        for (int k = from; k < to; k++) {
+            int other = members[k];
+            float dx = x[other] - cx;
+            float dy = y[other] - cy;
+            float reach = radius[other] + r;
+            float distanceSquared = dx * dx + dy * dy;
+            if (other == disc) {
+                continue;
+            }
+
+            if (distanceSquared < reach * reach) {
+                touching[other] = true;
+                touching[disc] = true;
+            } else {
+                clearance = Math.min(clearance, (float) Math.sqrt(distanceSquared) - reach);
+            }
+        }
+        return clearance;
+    }
+
+    /**
+     * Returns a disc other than {@code disc} and below {@code limit} that overlaps it, or -1.
+     */
+    private int findTouching(int disc, int limit) {
+        float cx = x[disc];
+        float cy = y[disc];
+        float r = radius[disc];
+        int column = cell(cx);
+        int row = cell(cy);
+        int own = bucket(column, row);
+
+        // The disc's own cell first, where a touching disc is likeliest
+        int found = findTouching(disc, limit, cx, cy, r, own, own + 1);
+        for (int j = row - 1; j <= row + 1 && found < 0; j++) {
+            int first = bucket(column - 1, j);
+            if (first + 2 > mask) {
+                // The row's cells wrap around the end of the table, so each is a run of its own
+                for (int i = 0; i < 3 && found < 0; i++) {
+                    int bucket = first + i & mask;
+                    if (bucket != own) {
+                        found = findTouching(disc, limit, cx, cy, r, bucket, bucket + 1);
+                    }
+                }
+            } else if (j == row) {
+                // One run, less the own cell in the middle of it
+                found = findTouching(disc, limit, cx, cy, r, first, own);
+                if (found < 0) {
+                    found = findTouching(disc, limit, cx, cy, r, own + 1, first + 3);
+                }
+            } else {
+                found = findTouching(disc, limit, cx, cy, r, first, first + 3);
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Checks the discs of the buckets from {@code first} up to {@code end}.
+     */
+    private int findTouching(int disc, int limit, float cx, float cy, float r, int first,
+            int end) {
+        for (int k = bucketStarts[first]; k < bucketStarts[end]; k++) {
+            int other = members[k];
+            float dx = x[other] - cx;
+            float dy = y[other] - cy;
+            float reach = radius[other] + r;
+            if (dx * dx + dy * dy < reach * reach && other != disc && other < limit) {
+                return other;
+            }
+        }
+        return -1;
+    }
+
+    private int cell(float position) {
+        return (int) (position * cellsPerUnit); // Truncated, which is floor as none is negative
+    }
+    private int bucket(int column, int row) {
+        // Rows are scattered over the table, the cells of a row are kept in order
+        return row * 0x9E3779B9 + column & mask;
+    }
+}
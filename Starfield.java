@@ -0,0 +1,79 @@
+import java.awt.AlphaComposite;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.util.random.RandomGenerator;
+
+/**
+ * A field of faint stars generated once from a random source. The stars are painted into the
+ * cached background, so they are only drawn again when the canvas changes size.
+ */
+public class Starfield {
+    private static final int STAR_POINTS = 8;
+    private static final int STAR_RADIUS = 1;
+
+    // Outline of a star, computed once instead of per star and frame
+    private static final int[] STAR_X = new int[STAR_POINTS + 1];
+    private static final int[] STAR_Y = new int[STAR_POINTS + 1];
+
+    static {
+        for (int j = 0; j <= STAR_POINTS; j++) {
+            STAR_X[j] = (int) (STAR_RADIUS * Math.cos(j * Math.PI / 4));
+            STAR_Y[j] = (int) (STAR_RADIUS * Math.sin(j * Math.PI / 4));
+        }
+    }
+
+    private final int[] xCenters;
+    private final int[] yCenters;
+    private final AlphaComposite[] composites; // One per star, so painting never allocates
+
+    /**
+     * Places {@code count} stars at random positions within the given bounds.
+     */
+    public Starfield(int width, int height, int count, RandomGenerator random) {
+        this.xCenters = new int[count];
+        this.yCenters = new int[count];
+        this.composites = new AlphaComposite[count];
+
+        for (int i = 0; i < count; i++) {
+            float alpha = 0.1f + random.nextFloat() * 0.1f; // Semi-transparent
+            composites[i] = AlphaComposite.getInstance(AlphaComposite.SRC_OVER, alpha);
+            xCenters[i] = (int) (random.nextDouble() * width);
+            yCenters[i] = (int) (random.nextDouble() * height);
+        }
+    }
+
+    public int getStarCount() {
+        return composites.length;
+    }
+
+    /**
+     * Draws the stars that touch {@code area}. Tiled rendering passes each tile, so it only draws
+     * its own stars.
+     *
+     * @param g2d the Graphics2D context to draw on.
+     * @param area the area to draw, or null for the whole field.
+     */
+    public void paint(Graphics2D g2d, Rectangle area) {
+        g2d.setColor(Color.WHITE);
+
+        int reach = STAR_RADIUS + 1; // Antialiasing bleeds one pixel further
+        for (int i = 0; i < composites.length; i++) {
+            if (area != null && (xCenters[i] + reach < area.x
+                    || xCenters[i] - reach >= area.x + area.width
+                    || yCenters[i] + reach < area.y
+                    || yCenters[i] - reach >= area.y + area.height)) {
+                continue;
+            }
+
+            g2d.setComposite(composites[i]);
+            for (int j = 0; j < STAR_POINTS; j++) {
+                g2d.drawLine(xCenters[i] + STAR_X[j], yCenters[i] + STAR_Y[j],
+                        xCenters[i] + STAR_X[j + 1], yCenters[i] + STAR_Y[j + 1]);
+            }
+        }
+
+        // Reset alpha composite to fully opaque
+        g2d.setComposite(AlphaComposite.SrcOver);
+    }
+}
@@ -0,0 +1,190 @@
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Watches many streams of an {@link AnimationServer} at once and reports how they were served,
+ * to try the server out under load without a browser.
+ *
+ * <pre>
+ * java StreamClient [url] [streams] [frames]
+ * </pre>
+ *
+ * Every stream is read on a virtual thread of its own until it has delivered the given number of
+ * frames, each of which must be a JPEG image.
+ */
+public class StreamClient {
+    public static final String DEFAULT_URL = "http://127.0.0.1:8080/stream";
+    public static final int DEFAULT_STREAMS = 100;
+    public static final int DEFAULT_FRAMES = 50;
+
+    /**
+     * What one stream delivered.
+     */
+    private static final class StreamResult {
+        final boolean refused;
+        final int frames;
+        final long bytes;
+
+        StreamResult(boolean refused, int frames, long bytes) {
+            this.refused = refused;
+            this.frames = frames;
+            this.bytes = bytes;
+        }
+    }
+
+    private final HttpClient client = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .executor(Executors.newVirtualThreadPerTaskExecutor())
+            .build();
+
+    /**
+     * Reads {@code frames} frames from the stream at {@code uri}, or fewer if the server ends it
+     * first.
+     */
+    private StreamResult watch(URI uri, int frames) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder(uri).GET().build();
+        HttpResponse<InputStream> response =
+                client.send(request, HttpResponse.BodyHandlers.ofInputStream());
+        try (InputStream body = response.body()) {
+            if (response.statusCode() == 503) {
+                return new StreamResult(true, 0, 0);
+            }
+            if (response.statusCode() != 200) {
+                throw new IOException("Status " + response.statusCode());
+            }
+
+            int frame = 0;
+            long bytes = 0;
+            while (frame < frames) {
+                int length = readPartHeaders(body);
+                if (length < 0) {
+                    break; // The stream ended
+                }
+                byte[] image = body.readNBytes(length);
+                if (image.length < length) {
+                    throw new EOFException("Frame " + frame + " is cut short");
+                }
+                if (length < 2 || (image[0] & 0xFF) != 0xFF || (image[1] & 0xFF) != 0xD8) {
+                    throw new IOException("Frame " + frame + " is not a JPEG image");
+                }
+                frame++;
+                bytes += length;
+            }
+            return new StreamResult(false, frame, bytes);
+        }
+    }
+
+    /**
+     * Skips to the next part of the multipart stream and reads its headers.
+     *
+     * @return the length of the part's content, or -1 at the end of the stream.
+     */
+    private static int readPartHeaders(InputStream in) throws IOException {
+        String line;
+        do {
+            line = readLine(in); // The boundary, after the end of the previous part
+        } while (line != null && !line.startsWith("--"));
+        if (line == null) {
+            return -1;
+        }
+
+        int length = -1;
+        while ((line = readLine(in)) != null && !line.isEmpty()) {
+            if (line.regionMatches(true, 0, "Content-Length:", 0, 15)) {
+                length = Integer.parseInt(line.substring(15).strip());
+            }
+        }
+        if (line == null) {
+            return -1;
+        }
+        if (length < 0) {
+            throw new IOException("Part without a Content-Length");
+        }
+        return length;
+    }
+
+    /**
+     * Reads a line ended by CRLF, or returns null at the end of the stream.
+     */
+    private static String readLine(InputStream in) throws IOException {
+        ByteArrayOutputStream line = new ByteArrayOutputStream();
+        int b;
+        while ((b = in.read()) != '\n') {
+            if (b < 0) {
+                return null;
+            }
+            if (b != '\r') {
+                line.write(b);
+            }
+        }
+        return line.toString(StandardCharsets.US_ASCII);
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        if (args.length > 3) {
+            System.err.println("Usage: StreamClient [url] [streams] [frames]");
+            System.exit(2);
+        }
+
+        URI uri = URI.create(args.length >= 1 ? args[0] : DEFAULT_URL);
+        int streams = args.length >= 2 ? Integer.parseInt(args[1]) : DEFAULT_STREAMS;
+        int frames = args.length == 3 ? Integer.parseInt(args[2]) : DEFAULT_FRAMES;
+
+        StreamClient client = new StreamClient();
+        long start = System.nanoTime();
+        List<Future<StreamResult>> results = new ArrayList<>();
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < streams; i++) {
+                results.add(executor.submit(() -> client.watch(uri, frames)));
+            }
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        int served = 0;
+        int refused = 0;
+        int failed = 0;
+        long totalFrames = 0;
+        long totalBytes = 0;
+        for (Future<StreamResult> future : results) {
+            try {
+                StreamResult result = future.get();
+                if (result.refused) {
+                    refused++;
+                } else {
+                    served++;
+                    totalFrames += result.frames;
+                    totalBytes += result.bytes;
+                }
+            } catch (ExecutionException e) {
+                failed++;
+                if (failed == 1) {
+                    System.err.println("A stream failed: " + e.getCause());
+                }
+            }
+        }
+
+        System.out.printf("%d streams in %.2fs: %d served, %d refused, %d failed%n", streams,
+                seconds, served, refused, failed);
+        if (served > 0) {
+            System.out.printf("%d frames, %.1f fps per stream, %.1f KB per frame%n", totalFrames,
+                    totalFrames / (double) served / seconds,
+                    totalFrames > 0 ? totalBytes / 1024.0 / totalFrames : 0.0);
+        }
+        if (failed > 0) {
+            System.exit(1);
+        }
+    }
+}
@@ -0,0 +1,120 @@
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Splits a rendering pass over a large image into square tiles and renders them in parallel on a
+ * {@link ForkJoinPool}. Every tile gets its own {@link Graphics2D} clipped to the tile, so tiles
+ * write disjoint pixels of the same image and need no joining step afterwards.
+ *
+ * <p>
+ * A pass must be safe to run concurrently for different tiles: it may read shared state but must
+ * only draw through the graphics it is given, or into pixels inside its own tile.
+ */
+public class TileRenderer {
+    /**
+     * Canvases with fewer pixels than this are rendered faster on a single thread.
+     */
+    public static final int MIN_TILED_PIXELS = 1920 * 1080;
+
+    private static final int DEFAULT_TILE_SIZE = 256;
+    private static final int TILES_PER_TASK = 2; // Below this a task renders its tiles itself
+
+    @FunctionalInterface
+    public interface TilePass {
+        void render(Graphics2D g2d, Rectangle tile);
+    }
+
+    private final ForkJoinPool pool;
+    private final int tileSize;
+
+    public TileRenderer() {
+        this(ForkJoinPool.commonPool(), DEFAULT_TILE_SIZE);
+    }
+
+    public TileRenderer(ForkJoinPool pool, int tileSize) {
+        if (tileSize <= 0) {
+            throw new IllegalArgumentException("Tile size must be positive.");
+        }
+
+        this.pool = pool;
+        this.tileSize = tileSize;
+    }
+
+    public static boolean isWorthTiling(int width, int height) {
+        return (long) width * height >= MIN_TILED_PIXELS;
+    }
+
+    /**
+     * Renders {@code pass} over the whole image.
+     */
+    public void render(BufferedImage target, TilePass pass) {
+        render(target, 0, 0, target.getWidth(), target.getHeight(), pass);
+    }
+
+    /**
+     * Renders {@code pass} over the tiles that intersect the given area, and waits for all of
+     * them to finish.
+     */
+    public void render(BufferedImage target, int x, int y, int width, int height, TilePass pass) {
+        int x1 = Math.max(x, 0) / tileSize;
+        int y1 = Math.max(y, 0) / tileSize;
+        int x2 = (Math.min(x + width, target.getWidth()) + tileSize - 1) / tileSize;
+        int y2 = (Math.min(y + height, target.getHeight()) + tileSize - 1) / tileSize;
+        if (x1 >= x2 || y1 >= y2) {
+            return;
+        }
+
+        int columns = x2 - x1;
+        pool.invoke(new TileTask(target, pass, x1, y1, columns, 0, columns * (y2 - y1)));
+    }
+
+    private final class TileTask extends RecursiveAction {
+        private final BufferedImage target;
+        private final TilePass pass;
+        private final int firstColumn;
+        private final int firstRow;
+        private final int columns;
+        private final int from;
+        private final int to;
+
+        TileTask(BufferedImage target, TilePass pass, int firstColumn, int firstRow, int columns,
+                int from, int to) {
+            this.target = target;
+            this.pass = pass;
+            this.firstColumn = firstColumn;
+            this.firstRow = firstRow;
+            this.columns = columns;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > TILES_PER_TASK) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new TileTask(target, pass, firstColumn, firstRow, columns, from, middle),
+                        new TileTask(target, pass, firstColumn, firstRow, columns, middle, to));
+                return;
+            }
+
+            Rectangle tile = new Rectangle();
+            for (int i = from; i < to; i++) {
+                int tileX = (firstColumn + i % columns) * tileSize;
+                int tileY = (firstRow + i / columns) * tileSize;
+                tile.setBounds(tileX, tileY, Math.min(tileSize, target.getWidth() - tileX),
+                        Math.min(tileSize, target.getHeight() - tileY));
+
+                Graphics2D g2d = target.createGraphics();
+                g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING,
+                        RenderingHints.VALUE_ANTIALIAS_ON);
+                g2d.clip(tile);
+                pass.render(g2d, tile);
+                g2d.dispose();
+            }
+        }
+    }
+}
@@ -0,0 +1,260 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Records frames into an uncompressed YUV4MPEG2 (Y4M) video, which ffmpeg, mpv and most video
+ * tools read directly. Frames are copied into pooled pixel arrays and handed to a background
+ * thread that converts them to YUV 4:2:0 and writes them through a {@link FileChannel}, so the
+ * caller never waits for the disk.
+ *
+ * <p>
+ * At most {@code queueCapacity} frames wait for the writer. What happens to a frame submitted when
+ * all of them are taken is decided by the {@link OverflowPolicy}.
+ */
+public class Y4mRecorder implements AutoCloseable {
+    public enum OverflowPolicy {
+        /**
+         * Wait until the writer frees a slot. Nothing is lost, but the caller slows down to the
+         * speed of the disk. Meant for offline export.
+         */
+        BLOCK,
+
+        /**
+         * Drop the frame and count it. The caller never waits. Meant for recording a live
+         * animation.
+         */
+        DROP
+    }
+
+    private static final int[] END_OF_STREAM = new int[0];
+    private static final byte[] FRAME_HEADER = "FRAME\n".getBytes(StandardCharsets.US_ASCII);
+
+    private final int width;
+    private final int height;
+    private final OverflowPolicy policy;
+    private final FileChannel channel;
+    private final BlockingQueue<int[]> freeFrames;
+    private final BlockingQueue<int[]> pendingFrames;
+    private final Thread writer;
+    private final AtomicLong framesWritten = new AtomicLong();
+    private final AtomicLong framesDropped = new AtomicLong();
+    private volatile IOException failure;
+    private volatile boolean closed = false; // Set by the closing thread, read by submitters
+
+    // Owned by the writer thread
+    private final ByteBuffer bytes;
+    private final byte[] yRow;
+    private final byte[] uRow;
+    private final byte[] vRow;
+
+    /**
+     * Creates the file, writes the stream header and starts the writer thread.
+     *
+     * @param file the file to write, replaced if it exists.
+     * @param fps the frame rate stored in the header.
+     * @param queueCapacity the most frames waiting to be written.
+     * @param policy what to do with frames that do not fit in the queue.
+     */
+    public Y4mRecorder(Path file, int width, int height, int fps, int queueCapacity,
+            OverflowPolicy policy) throws IOException {
+        if (width <= 0 || height <= 0) {
+            throw new IllegalArgumentException("Frame size must be positive.");
+        }
+        if (queueCapacity <= 0) {
+            throw new IllegalArgumentException("Queue capacity must be positive.");
+        }
+
+        this.width = width;
+        this.height = height;
+        this.policy = policy;
+        this.freeFrames = new ArrayBlockingQueue<>(queueCapacity);
+        this.pendingFrames = new ArrayBlockingQueue<>(queueCapacity + 1); // Room for the end
+        for (int i = 0; i < queueCapacity; i++) {
+            freeFrames.add(new int[width * height]);
+        }
+
+        int chromaWidth = (width + 1) / 2;
+        int chromaHeight = (height + 1) / 2;
+        this.bytes = ByteBuffer.allocateDirect(
+                FRAME_HEADER.length + width * height + 2 * chromaWidth * chromaHeight);
+        this.yRow = new byte[width];
+        this.uRow = new byte[chromaWidth];
+        this.vRow = new byte[chromaWidth];
+
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        String header = String.format("YUV4MPEG2 W%d H%d F%d:1 Ip A1:1 C420jpeg\n", width, height,
+                fps);
+        writeFully(ByteBuffer.wrap(header.getBytes(StandardCharsets.US_ASCII)));
+
+        this.writer = new Thread(this::writeFrames, "Y4mRecorder");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    /**
+     * Queues a copy of the given frame for writing.
+     *
+     * @param pixels the frame as {@code width * height} ARGB pixels, row by row. Not kept.
+     * @return true if the frame was queued, false if it was dropped or the recorder failed.
+     */
+    public boolean submit(int[] pixels) {
+        if (pixels.length < width * height) {
+            throw new IllegalArgumentException("Frame must hold " + width * height + " pixels.");
+        }
+        if (closed || failure != null) {
+            return false;
+        }
+
+        int[] frame = freeFrames.poll();
+        if (frame == null && policy == OverflowPolicy.BLOCK) {
+            try {
+                frame = freeFrames.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        if (frame == null) {
+            framesDropped.incrementAndGet();
+            return false;
+        }
+        if (failure != null) {
+            return false; // Woken up by a writer that gave up
+        }
+
+        System.arraycopy(pixels, 0, frame, 0, width * height);
+        pendingFrames.add(frame); // Never full: there are only as many frames as free slots
+        return true;
+    }
+
+    /**
+     * Counts a frame that was not submitted as dropped, e.g. one of another size than the video.
+     */
+    public void drop() {
+        framesDropped.incrementAndGet();
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public long getFramesWritten() {
+        return framesWritten.get();
+    }
+
+    public long getFramesDropped() {
+        return framesDropped.get();
+    }
+
+    /**
+     * Writes the frames still queued, stops the writer thread and closes the file.
+     *
+     * @throws IOException if writing any frame failed.
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+
+        pendingFrames.add(END_OF_STREAM);
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        channel.close();
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    private void writeFrames() {
+        try {
+            while (true) {
+                int[] frame = pendingFrames.take();
+                if (frame == END_OF_STREAM) {
+                    return;
+                }
+
+                encodeFrame(frame);
+                freeFrames.add(frame);
+                writeFully(bytes);
+                framesWritten.incrementAndGet();
+            }
+        } catch (IOException e) {
+            failure = e;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            // Let a blocked submit go on; it will see the failure
+            freeFrames.offer(new int[0]);
+        }
+    }
+
+    /**
+     * Converts a frame to BT.601 YUV 4:2:0 with studio range, chroma averaged over 2x2 pixels.
+     */
+    private void encodeFrame(int[] frame) {
+        bytes.clear();
+        bytes.put(FRAME_HEADER);
+
+        // Rows are converted into a heap array and copied into the direct buffer in bulk
+        for (int y = 0; y < height; y++) {
+            for (int x = 0, i = y * width; x < width; x++, i++) {
+                int argb = frame[i];
+                int r = (argb >> 16) & 0xFF;
+                int g = (argb >> 8) & 0xFF;
+                int b = argb & 0xFF;
+                yRow[x] = (byte) (((66 * r + 129 * g + 25 * b + 128) >> 8) + 16);
+            }
+            bytes.put(yRow);
+        }
+
+        int uStart = bytes.position();
+        int chromaWidth = uRow.length;
+        int vStart = uStart + chromaWidth * ((height + 1) / 2);
+        for (int y = 0; y < height; y += 2) {
+            int row1 = y * width;
+            int row2 = Math.min(y + 1, height - 1) * width;
+            for (int x = 0, cx = 0; x < width; x += 2, cx++) {
+                int x2 = Math.min(x + 1, width - 1);
+                int p1 = frame[row1 + x];
+                int p2 = frame[row1 + x2];
+                int p3 = frame[row2 + x];
+                int p4 = frame[row2 + x2];
+                int r = (((p1 >> 16) & 0xFF) + ((p2 >> 16) & 0xFF) + ((p3 >> 16) & 0xFF)
+                        + ((p4 >> 16) & 0xFF) + 2) >> 2;
+                int g = (((p1 >> 8) & 0xFF) + ((p2 >> 8) & 0xFF) + ((p3 >> 8) & 0xFF)
+                        + ((p4 >> 8) & 0xFF) + 2) >> 2;
+                int b = ((p1 & 0xFF) + (p2 & 0xFF) + (p3 & 0xFF) + (p4 & 0xFF) + 2) >> 2;
+                uRow[cx] = (byte) (((-38 * r - 74 * g + 112 * b + 128) >> 8) + 128);
+                vRow[cx] = (byte) (((112 * r - 94 * g - 18 * b + 128) >> 8) + 128);
+            }
+            int chromaRow = y / 2;
+            bytes.put(uStart + chromaRow * chromaWidth, uRow);
+            bytes.put(vStart + chromaRow * chromaWidth, vRow);
+        }
+
+        bytes.position(bytes.capacity());
+        bytes.flip();
+    }
+
+    private void writeFully(ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+}
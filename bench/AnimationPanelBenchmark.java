@@ -0,0 +1,182 @@
+package bench;
+
+import java.awt.Graphics2D;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.invoke.VarHandle;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures every draw* method of {@code AnimationPanel}. Run it with {@code make bench}, which
+ * also enables the gc profiler to report the allocation rate.
+ *
+ * <p>
+ * JMH refuses benchmarks in the default package, and classes in a named package cannot refer to
+ * the default package by name, so the panel and its private draw methods are reached through
+ * method handles. The handles are {@code static final}, so the JIT treats them as constants.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class AnimationPanelBenchmark {
+    private static final int MAX_AGE = 100; // AnimationPanel.MAX_AGE
+
+    private static final Class<?> PANEL;
+    private static final Class<?> ASSETS;
+    private static final MethodHandle NEW_PANEL;
+    private static final VarHandle CHARACTER_AGE;
+    private static final MethodHandle UPDATE_CHARACTER;
+    private static final MethodHandle SET_SIZE;
+    private static final MethodHandle UPDATE_CANVAS_SIZE;
+    private static final VarHandle BUFFER_GRAPHICS;
+    private static final VarHandle PANEL_ASSETS;
+
+    private static final MethodHandle DRAW_BACKGROUND;
+    private static final MethodHandle DRAW_SUN;
+    private static final MethodHandle DRAW_EARTH;
+    private static final MethodHandle DRAW_CONTINENTS;
+    private static final MethodHandle DRAW_CLOUDS;
+    private static final MethodHandle DRAW_EXPLOSION;
+    private static final MethodHandle DRAW_MIDPOINT_CIRCLE;
+    private static final MethodHandle DRAW_MIDPOINT_ELLIPSE;
+
+    static {
+        try {
+            PANEL = Class.forName("AnimationPanel");
+            MethodHandles.Lookup lookup =
+                    MethodHandles.privateLookupIn(PANEL, MethodHandles.lookup());
+
+            NEW_PANEL = lookup.findConstructor(PANEL, MethodType.methodType(void.class,
+                    boolean.class)).asType(MethodType.methodType(Object.class, boolean.class));
+            CHARACTER_AGE = lookup.findVarHandle(PANEL, "characterAge", int.class);
+            UPDATE_CHARACTER = instanceMethod(lookup, "updateCharacter");
+            SET_SIZE = instanceMethod(lookup, "setSize", int.class, int.class);
+            UPDATE_CANVAS_SIZE = instanceMethod(lookup, "updateCanvasSize");
+            BUFFER_GRAPHICS = lookup.findVarHandle(PANEL, "bufferGraphics", Graphics2D.class);
+            ASSETS = Class.forName("SceneAssets");
+            PANEL_ASSETS = lookup.findVarHandle(PANEL, "assets", ASSETS);
+
+            DRAW_BACKGROUND = instanceMethod(lookup, "drawBackground", Graphics2D.class);
+            DRAW_SUN = instanceMethod(lookup, "drawSun", Graphics2D.class);
+            DRAW_EARTH = instanceMethod(lookup, "drawEarth", Graphics2D.class);
+            DRAW_CONTINENTS = instanceMethod(
+                    MethodHandles.privateLookupIn(ASSETS, MethodHandles.lookup()), ASSETS,
+                    "drawContinents", Graphics2D.class, int.class, int.class, int.class);
+            DRAW_CLOUDS = instanceMethod(lookup, "drawClouds", int.class, double.class);
+            DRAW_EXPLOSION = instanceMethod(lookup, "drawExplosion", Graphics2D.class);
+            DRAW_MIDPOINT_CIRCLE = lookup.findStatic(PANEL, "drawMidpointCircle", MethodType
+                    .methodType(void.class, Graphics2D.class, int.class, int.class, int.class,
+                            boolean.class));
+            DRAW_MIDPOINT_ELLIPSE = lookup.findStatic(PANEL, "drawMidpointEllipse", MethodType
+                    .methodType(void.class, Graphics2D.class, int.class, int.class, int.class,
+                            int.class, boolean.class));
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    @Param({"600", "1200", "2400"})
+    public int canvasSize;
+
+    @Param({"0", "50", "100"})
+    public int characterAge;
+
+    private Object panel;
+    private Object assets; // Paints the Earth sprites, the continents among them
+    private Graphics2D g2d;
+    private int centerX;
+    private int centerY;
+    private int earthRadius;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Throwable {
+        panel = (Object) NEW_PANEL.invokeExact(false);
+
+        // Run an explosion until it has counted down to characterAge, so its particles have
+        // spread as far as they would have in the animation
+        CHARACTER_AGE.set(panel, MAX_AGE - 1);
+        do {
+            UPDATE_CHARACTER.invokeExact(panel);
+        } while ((int) CHARACTER_AGE.get(panel) > Math.max(characterAge, 1));
+        CHARACTER_AGE.set(panel, characterAge);
+
+        // Resize the panel so its buffers, sprites and stars match the canvas, then draw
+        // straight into its back buffer like renderFrame does
+        SET_SIZE.invokeExact(panel, canvasSize, canvasSize);
+        UPDATE_CANVAS_SIZE.invokeExact(panel);
+        g2d = (Graphics2D) BUFFER_GRAPHICS.get(panel);
+        assets = (Object) PANEL_ASSETS.get(panel);
+
+        centerX = canvasSize / 2;
+        centerY = canvasSize / 2;
+        earthRadius = 40 + characterAge / 5;
+    }
+
+    @Benchmark
+    public void drawBackground() throws Throwable {
+        DRAW_BACKGROUND.invokeExact(panel, g2d);
+    }
+
+    @Benchmark
+    public void drawSun() throws Throwable {
+        DRAW_SUN.invokeExact(panel, g2d);
+    }
+
+    @Benchmark
+    public void drawEarth() throws Throwable {
+        DRAW_EARTH.invokeExact(panel, g2d);
+    }
+
+    @Benchmark
+    public void drawContinents() throws Throwable {
+        DRAW_CONTINENTS.invokeExact(assets, g2d, centerX, centerY, earthRadius);
+    }
+
+    @Benchmark
+    public void drawClouds() throws Throwable {
+        DRAW_CLOUDS.invokeExact(panel, earthRadius, 0.0);
+    }
+
+    @Benchmark
+    public void drawExplosion() throws Throwable {
+        DRAW_EXPLOSION.invokeExact(panel, g2d);
+    }
+
+    @Benchmark
+    public void drawMidpointCircle() throws Throwable {
+        DRAW_MIDPOINT_CIRCLE.invokeExact(g2d, centerX, centerY, earthRadius, true);
+    }
+
+    @Benchmark
+    public void drawMidpointEllipse() throws Throwable {
+        DRAW_MIDPOINT_ELLIPSE.invokeExact(g2d, centerX, centerY, 100, 100, true);
+    }
+
+    private static MethodHandle instanceMethod(MethodHandles.Lookup lookup, String name,
+            Class<?>... parameterTypes) throws ReflectiveOperationException {
+        return instanceMethod(lookup, PANEL, name, parameterTypes);
+    }
+
+    private static MethodHandle instanceMethod(MethodHandles.Lookup lookup, Class<?> owner,
+            String name, Class<?>... parameterTypes) throws ReflectiveOperationException {
+        MethodHandle handle = lookup.findVirtual(owner, name,
+                MethodType.methodType(void.class, parameterTypes));
+        return handle.asType(handle.type().changeParameterType(0, Object.class));
+    }
+}
@@ -0,0 +1,86 @@
+package bench;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.random.RandomGenerator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures one tick of {@code BodySystem} at 50000 bodies, from a crowded area where few bodies
+ * find room to grow to a sparse one where most do. Run it with
+ * {@code make bench BENCH=BodySystemBenchmark}.
+ *
+ * <p>
+ * The system is reached through method handles, as {@code AnimationPanelBenchmark} explains.
+ * Every trial first runs enough ticks for the bodies to settle into their crowding.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class BodySystemBenchmark {
+    private static final int MAX_AGE = 100; // AnimationPanel.MAX_AGE
+    private static final int SETTLE_TICKS = 3000;
+
+    private static final MethodHandle LOAD_SCENE;
+    private static final MethodHandle NEW_BODIES;
+    private static final MethodHandle UPDATE;
+
+    static {
+        try {
+            Class<?> scene = Class.forName("Scene");
+            Class<?> bodies = Class.forName("BodySystem");
+            MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+
+            LOAD_SCENE = lookup.findStatic(scene, "loadDefault", MethodType.methodType(scene))
+                    .asType(MethodType.methodType(Object.class));
+            NEW_BODIES = lookup.findConstructor(bodies, MethodType.methodType(void.class,
+                    int.class, int.class, scene, int.class, int.class, RandomGenerator.class))
+                    .asType(MethodType.methodType(Object.class, int.class, int.class,
+                            Object.class, int.class, int.class, RandomGenerator.class));
+            UPDATE = lookup.findVirtual(bodies, "update", MethodType.methodType(void.class))
+                    .asType(MethodType.methodType(void.class, Object.class));
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    @Param({"50000"})
+    public int bodyCount;
+
+    @Param({"600", "8000", "50000"})
+    public int areaSize;
+
+    private Object bodies;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Throwable {
+        Object scene = (Object) LOAD_SCENE.invokeExact();
+        bodies = (Object) NEW_BODIES.invokeExact(bodyCount, MAX_AGE, scene, areaSize, areaSize,
+                (RandomGenerator) new SplittableRandom(1));
+        for (int i = 0; i < SETTLE_TICKS; i++) {
+            UPDATE.invokeExact(bodies);
+        }
+    }
+
+    @Benchmark
+    public void update() throws Throwable {
+        UPDATE.invokeExact(bodies);
+    }
+}